@@ -0,0 +1,46 @@
+package aidan_garvey.mapeditor;
+
+import java.util.function.LongSupplier;
+
+// minimal timing helpers shared by the benchmark harnesses
+// not a replacement for JMH, but enough to compare two implementations on the same machine
+final class Bench {
+    static final int WARMUP_ROUNDS = 5, MEASURED_ROUNDS = 10;
+
+    // consumed results go here so the JIT can't remove the measured work
+    static volatile long sink;
+
+    private Bench() {}
+
+    // run the task repeatedly and return the best observed time per operation in nanoseconds
+    static double nsPerOp(long opsPerRound, LongSupplier task) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++)
+            sink += task.getAsLong();
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            sink += task.getAsLong();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        return (double) best / opsPerRound;
+    }
+
+    // bytes currently in use on the heap, after asking the collector to settle
+    static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, rt.totalMemory() - rt.freeMemory());
+        }
+        return used;
+    }
+}
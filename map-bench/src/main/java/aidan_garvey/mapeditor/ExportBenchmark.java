@@ -0,0 +1,65 @@
+package aidan_garvey.mapeditor;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// time to export a 40-floor, 1M-sector map in the game's format, to a file and to a channel that discards what it's
+// given, and the bytes allocated on the heap during an export, which should stay far below the size of the export
+// run with: mvn -Pbench compile, then
+//   java -Xmx2g -cp map-core/target/classes:map-bench/target/classes aidan_garvey.mapeditor.ExportBenchmark
+public class ExportBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int FLOORS = 40, FLOOR_SIDE = 158;
+
+    public static void main(String[] args) throws IOException {
+        GameMap map = new GameMap();
+        for (int y = 0; y < FLOORS; y++)
+            MapFileBenchmark.fill(map, FLOOR_SIDE, y);
+
+        MapExporter exporter = new MapExporter();
+        WritableByteChannel discard = new WritableByteChannel() {
+            public int write(ByteBuffer src) {
+                int n = src.remaining();
+                Bench.sink += src.get(src.limit() - 1);
+                src.position(src.limit());
+                return n;
+            }
+            public boolean isOpen() {
+                return true;
+            }
+            public void close() {}
+        };
+
+        Path file = Files.createTempFile("bench", "." + MapExporter.EXTENSION);
+        try {
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long bestFile = Long.MAX_VALUE, bestDiscard = Long.MAX_VALUE, allocated = Long.MAX_VALUE;
+            for (int i = 0; i < ROUNDS; i++) {
+                long start = System.nanoTime();
+                exporter.export(map, file);
+                bestFile = Math.min(bestFile, System.nanoTime() - start);
+
+                long allocBefore = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+                start = System.nanoTime();
+                exporter.export(map, discard);
+                bestDiscard = Math.min(bestDiscard, System.nanoTime() - start);
+                allocated = Math.min(allocated,
+                        threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocBefore);
+            }
+
+            long size = Files.size(file);
+            System.out.printf("%d sectors, export is %.1f MB%n", FLOORS * FLOOR_SIDE * FLOOR_SIDE, size / 1e6);
+            System.out.printf("to file:    %.1f ms (%.0f MB/s)%n", bestFile / 1e6, size * 1e3 / bestFile);
+            System.out.printf("to discard: %.1f ms (%.0f MB/s)%n", bestDiscard / 1e6, size * 1e3 / bestDiscard);
+            System.out.printf("heap allocated per export: %.2f MB%n", allocated / 1e6);
+        }
+        finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
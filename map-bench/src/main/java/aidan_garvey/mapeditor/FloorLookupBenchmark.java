@@ -0,0 +1,60 @@
+package aidan_garvey.mapeditor;
+
+import java.util.HashMap;
+import java.util.Random;
+
+// compares sector lookup cost of the chunked Floor grid against the nested HashMap layout it replaced
+// run with: mvn -Pbench compile, then
+//   java -cp map-core/target/classes:map-bench/target/classes aidan_garvey.mapeditor.FloorLookupBenchmark
+public class FloorLookupBenchmark {
+    private static final int[] SIDES = {100, 250, 500}; // square floors of side^2 sectors
+    private static final int LOOKUPS = 4_000_000;
+
+    public static void main(String[] args) {
+        System.out.printf("%-10s %-18s %-18s%n", "sectors", "nested HashMap", "chunked Floor");
+
+        for (int side : SIDES) {
+            HashMap<Integer, HashMap<Integer, Sector>> nested = new HashMap<>();
+            Floor floor = new Floor(new TexturePalette());
+
+            for (int z = 0; z < side; z++) {
+                for (int x = 0; x < side; x++) {
+                    Sector s = new Sector(z, x, 0);
+                    nested.computeIfAbsent(z, k -> new HashMap<>()).put(x, s);
+                    floor.put(s);
+                }
+            }
+
+            // query coordinates, a quarter of which fall outside the populated area
+            Random rng = new Random(side);
+            int[] qz = new int[LOOKUPS], qx = new int[LOOKUPS];
+            int range = side + side / 4;
+            for (int i = 0; i < LOOKUPS; i++) {
+                qz[i] = rng.nextInt(range) - side / 8;
+                qx[i] = rng.nextInt(range) - side / 8;
+            }
+
+            double nestedNs = Bench.nsPerOp(LOOKUPS, () -> {
+                long hits = 0;
+                for (int i = 0; i < LOOKUPS; i++) {
+                    HashMap<Integer, Sector> col = nested.get(qz[i]);
+                    if (col != null && col.get(qx[i]) != null)
+                        ++hits;
+                }
+                return hits;
+            });
+
+            double floorNs = Bench.nsPerOp(LOOKUPS, () -> {
+                long hits = 0;
+                for (int i = 0; i < LOOKUPS; i++) {
+                    if (floor.get(qz[i], qx[i]) != null)
+                        ++hits;
+                }
+                return hits;
+            });
+
+            System.out.printf("%-10d %-18s %-18s%n", side * side,
+                    String.format("%.2f ns/lookup", nestedNs), String.format("%.2f ns/lookup", floorNs));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package aidan_garvey.mapeditor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+// overhead of the edit journal: time per edit with and without a journal collecting every BATCH edits, journal bytes
+// written per edit, and the time for one group commit (collecting a batch, writing it and waiting for the fsync)
+// edits are random texture changes on a 100k-sector map, so most batches hold BATCH distinct sectors
+// run with: mvn -Pbench compile, then
+//   java -cp map-core/target/classes:map-bench/target/classes aidan_garvey.mapeditor.JournalBenchmark
+public class JournalBenchmark {
+    private static final int SIDE = 316;
+    private static final int EDITS = 100_000;
+    private static final int[] BATCHES = {1, 100, 1000};
+
+    public static void main(String[] args) throws IOException {
+        Path file = Files.createTempFile("bench", "." + MapFile.EXTENSION);
+        try {
+            GameMap map = new GameMap();
+            for (int z = 0; z < SIDE; z++) {
+                for (int x = 0; x < SIDE; x++)
+                    map.addSector(new Sector(z, x, 0));
+            }
+            MapFile.saveAll(map, file);
+
+            double plain = Bench.nsPerOp(EDITS, () -> edit(map, EDITS, 0, null));
+            System.out.printf("no journal: %.0f ns/edit%n%n", plain);
+
+            System.out.printf("%-8s %-12s %-14s %-14s%n", "batch", "ns/edit", "bytes/edit", "group commit");
+            for (int batch : BATCHES) {
+                // the journal's own timer is left idle, collects happen in edit()
+                MapJournal journal = MapJournal.create(map, file, r -> {});
+                Path journalFile = MapJournal.pathFor(file);
+                int edits = batch == 1 ? EDITS / 100 : EDITS;
+
+                long before = Files.size(journalFile);
+                long start = System.nanoTime();
+                edit(map, edits, batch, journal);
+                long elapsed = System.nanoTime() - start;
+                long bytes = Files.size(journalFile) - before;
+
+                System.out.printf("%-8d %-12s %-14s %-14s%n", batch,
+                        String.format("%.0f", (double) elapsed / edits),
+                        String.format("%.1f", (double) bytes / edits),
+                        String.format("%.2f ms", elapsed / 1e6 / (edits / batch)));
+                journal.close();
+            }
+        }
+        finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(MapJournal.pathFor(file));
+        }
+    }
+
+    // with a journal, sync after every batch edits, which is what bounds the edits lost in a crash
+    private static long edit(GameMap map, int edits, int batch, MapJournal journal) {
+        Random random = new Random(7);
+        long n = 0;
+        for (int i = 0; i < edits; i++) {
+            Sector s = map.getSector(random.nextInt(SIDE), random.nextInt(SIDE), 0);
+            s.setMainTexture(Direction.NORTH, "wall" + (i & 15) + ".png");
+            if (journal != null && (i + 1) % batch == 0)
+                journal.sync();
+            n += s.getZPos();
+        }
+        return n;
+    }
+}
@@ -0,0 +1,77 @@
+package aidan_garvey.mapeditor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// size of compressed (.gmapz) map files next to plain ones, the time to save and load them, and how fast single
+// chunks unpack, for the same maps as MapFileBenchmark
+// run with: mvn -Pbench compile, then
+//   java -Xmx2g -cp map-core/target/classes:map-bench/target/classes aidan_garvey.mapeditor.MapArchiveBenchmark
+public class MapArchiveBenchmark {
+    private static final int[] SIDES = {100, 316, 1000};
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        System.out.printf("%-10s %-11s %-11s %-7s %-10s %-10s %-12s %-12s%n", "sectors", "plain", "compressed",
+                "ratio", "save", "load", "us/chunk", "unpack rate");
+
+        Path plain = Files.createTempFile("bench", "." + MapFile.EXTENSION);
+        Path packed = Files.createTempFile("bench", "." + MapFile.COMPRESSED_EXTENSION);
+        try {
+            for (int side : SIDES) {
+                GameMap map = MapFileBenchmark.build(side);
+                MapFile.saveAll(map, plain);
+
+                long bestSave = Long.MAX_VALUE, bestLoad = Long.MAX_VALUE;
+                for (int i = 0; i < ROUNDS; i++) {
+                    long start = System.nanoTime();
+                    MapFile.saveAll(map, packed);
+                    bestSave = Math.min(bestSave, System.nanoTime() - start);
+
+                    start = System.nanoTime();
+                    GameMap loaded = MapFile.load(packed);
+                    Bench.sink += loaded.getFloor(0).size();
+                    bestLoad = Math.min(bestLoad, System.nanoTime() - start);
+                }
+
+                // unpack every chunk of the floor straight from the file, without building sectors
+                GameMap opened = MapFile.load(packed);
+                int[] chunks = opened.floorIndex().peek(0).getPendingChunks();
+                long records = 0;
+                for (int j = 0; j < chunks.length; j += MapFile.CHUNK_INFO)
+                    records += (long) chunks[j + 4] * MapFile.RECORD_SIZE;
+
+                long bestUnpack = Long.MAX_VALUE;
+                try (FileChannel ch = FileChannel.open(packed, StandardOpenOption.READ);
+                     ChunkCodec codec = new ChunkCodec()) {
+                    ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()).order(ByteOrder.LITTLE_ENDIAN);
+                    for (int i = 0; i < ROUNDS * 20; i++) {
+                        long start = System.nanoTime();
+                        for (int j = 0; j < chunks.length; j += MapFile.CHUNK_INFO)
+                            Bench.sink += codec.unpack(buf, chunks[j + 2], chunks[j + 3], chunks[j + 4]).get(0);
+                        bestUnpack = Math.min(bestUnpack, System.nanoTime() - start);
+                    }
+                }
+
+                int chunkCount = chunks.length / MapFile.CHUNK_INFO;
+                System.out.printf("%-10d %-11s %-11s %-7s %-10s %-10s %-12s %-12s%n", (long) side * side,
+                        String.format("%.1f MB", Files.size(plain) / 1e6),
+                        String.format("%.0f KB", Files.size(packed) / 1e3),
+                        String.format("%.0fx", (double) Files.size(plain) / Files.size(packed)),
+                        String.format("%.1f ms", bestSave / 1e6),
+                        String.format("%.1f ms", bestLoad / 1e6),
+                        String.format("%.1f", bestUnpack / 1e3 / chunkCount),
+                        String.format("%.0f MB/s", records * 1e3 / bestUnpack));
+            }
+        }
+        finally {
+            Files.deleteIfExists(plain);
+            Files.deleteIfExists(packed);
+        }
+    }
+}
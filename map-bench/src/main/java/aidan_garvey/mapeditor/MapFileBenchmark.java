@@ -0,0 +1,112 @@
+package aidan_garvey.mapeditor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// time to save and load maps of several sizes in the binary map format, and the time to first frame (opening a map
+// and decoding only the floor that's shown) for a map with many floors
+// every sector is edited a little (textures, adjoins, some doors) so the records aren't all defaults
+// run with: mvn -Pbench compile, then
+//   java -Xmx2g -cp map-core/target/classes:map-bench/target/classes aidan_garvey.mapeditor.MapFileBenchmark
+public class MapFileBenchmark {
+    private static final int[] SIDES = {100, 316, 1000}; // 10k, 100k and 1M sectors
+    private static final int ROUNDS = 5;
+    private static final int FLOORS = 40, FLOOR_SIDE = 158; // 40 floors of 25k sectors
+
+    public static void main(String[] args) throws IOException {
+        System.out.printf("%-10s %-12s %-12s %-14s %-12s %-14s%n", "sectors", "file size", "save", "1-sector save",
+                "load", "load rate");
+
+        Path file = Files.createTempFile("bench", "." + MapFile.EXTENSION);
+        try {
+            for (int side : SIDES) {
+                GameMap map = build(side);
+
+                long bestSave = Long.MAX_VALUE, bestTweak = Long.MAX_VALUE, bestLoad = Long.MAX_VALUE;
+                for (int i = 0; i < ROUNDS; i++) {
+                    long start = System.nanoTime();
+                    MapFile.saveAll(map, file);
+                    bestSave = Math.min(bestSave, System.nanoTime() - start);
+
+                    // saving again after one edit only appends the edited chunk
+                    map.getSector(i, i, 0).setSky(i % 2 == 0);
+                    start = System.nanoTime();
+                    MapFile.save(map, file);
+                    bestTweak = Math.min(bestTweak, System.nanoTime() - start);
+
+                    start = System.nanoTime();
+                    GameMap loaded = MapFile.load(file);
+                    Bench.sink += loadAll(loaded);
+                    bestLoad = Math.min(bestLoad, System.nanoTime() - start);
+                }
+
+                long sectors = (long) side * side;
+                System.out.printf("%-10d %-12s %-12s %-14s %-12s %-14s%n", sectors,
+                        String.format("%.1f MB", Files.size(file) / 1e6),
+                        String.format("%.1f ms", bestSave / 1e6),
+                        String.format("%.2f ms", bestTweak / 1e6),
+                        String.format("%.1f ms", bestLoad / 1e6),
+                        String.format("%.1f M/s", sectors * 1e3 / bestLoad));
+            }
+
+            System.out.printf("%n%-10s %-16s %-16s%n", "floors", "first floor", "all floors");
+            GameMap map = new GameMap();
+            for (int y = 0; y < FLOORS; y++)
+                fill(map, FLOOR_SIDE, y);
+            MapFile.save(map, file);
+
+            long bestFirst = Long.MAX_VALUE, bestAll = Long.MAX_VALUE;
+            for (int i = 0; i < ROUNDS; i++) {
+                long start = System.nanoTime();
+                GameMap loaded = MapFile.load(file);
+                Bench.sink += loaded.getFloor(0).size();
+                bestFirst = Math.min(bestFirst, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                loaded = MapFile.load(file);
+                Bench.sink += loadAll(loaded);
+                bestAll = Math.min(bestAll, System.nanoTime() - start);
+            }
+            System.out.printf("%-10d %-16s %-16s%n", FLOORS, String.format("%.1f ms", bestFirst / 1e6),
+                    String.format("%.1f ms", bestAll / 1e6));
+        }
+        finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // floors are decoded on first use, so touch every one of them
+    private static long loadAll(GameMap map) {
+        long sectors = 0;
+        for (int i = 0; i < map.getFloorCount(); i++)
+            sectors += map.getFloor(map.getFloorNumber(i)).size();
+        return sectors;
+    }
+
+    static GameMap build(int side) {
+        GameMap map = new GameMap();
+        fill(map, side, 0);
+        return map;
+    }
+
+    static void fill(GameMap map, int side, int y) {
+        for (int z = 0; z < side; z++) {
+            for (int x = 0; x < side; x++)
+                map.addSector(new Sector(z, x, y));
+        }
+
+        for (int z = 0; z < side; z++) {
+            for (int x = 0; x < side; x++) {
+                Sector s = map.getSector(z, x, y);
+                s.setMainTexture(Direction.NORTH, "wall" + (z * 31 + x) % 40 + ".png");
+                if ((z & 3) != 3)
+                    map.setWallAdjoin(s, Direction.EAST, true);
+                if ((z * 7 + x) % 50 == 0) {
+                    map.addDoor(s);
+                    map.setDoorKey(s, "key" + x % 4);
+                }
+            }
+        }
+    }
+}
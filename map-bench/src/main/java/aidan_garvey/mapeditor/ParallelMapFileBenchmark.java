@@ -0,0 +1,63 @@
+package aidan_garvey.mapeditor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+// save and load times of a 40-floor, 1M-sector map against the number of threads encoding and decoding chunks, for
+// plain and compressed files; loading includes decoding every floor
+// run with: mvn -Pbench compile, then
+//   java -Xmx2g -cp map-core/target/classes:map-bench/target/classes aidan_garvey.mapeditor.ParallelMapFileBenchmark
+public class ParallelMapFileBenchmark {
+    private static final int[] THREADS = {1, 2, 4, 8};
+    private static final int ROUNDS = 5;
+    private static final int FLOORS = 40, FLOOR_SIDE = 158;
+
+    public static void main(String[] args) throws Exception {
+        GameMap map = new GameMap();
+        for (int y = 0; y < FLOORS; y++)
+            MapFileBenchmark.fill(map, FLOOR_SIDE, y);
+
+        System.out.printf("%d processors available%n", Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-8s %-12s %-12s %-16s %-16s%n", "threads", "save", "load", "save compressed",
+                "load compressed");
+
+        Path plain = Files.createTempFile("bench", "." + MapFile.EXTENSION);
+        Path packed = Files.createTempFile("bench", "." + MapFile.COMPRESSED_EXTENSION);
+        try {
+            for (int threads : THREADS) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                System.out.printf("%-8d %-12s %-12s %-16s %-16s%n", threads,
+                        ms(pool, () -> MapFile.saveAll(map, plain)),
+                        ms(pool, () -> MapFile.load(plain).floorIndex().loadAll()),
+                        ms(pool, () -> MapFile.saveAll(map, packed)),
+                        ms(pool, () -> MapFile.load(packed).floorIndex().loadAll()));
+                pool.shutdown();
+            }
+        }
+        finally {
+            Files.deleteIfExists(plain);
+            Files.deleteIfExists(packed);
+        }
+    }
+
+    private interface Task {
+        void run() throws IOException;
+    }
+
+    // best time of the task run inside the pool, so the parallel parts of MapFile use its threads
+    private static String ms(ForkJoinPool pool, Task task) throws InterruptedException, ExecutionException {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long elapsed = pool.submit(() -> {
+                long start = System.nanoTime();
+                task.run();
+                return System.nanoTime() - start;
+            }).get();
+            best = Math.min(best, elapsed);
+        }
+        return String.format("%.0f ms", best / 1e6);
+    }
+}
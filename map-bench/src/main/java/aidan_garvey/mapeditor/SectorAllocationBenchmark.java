@@ -0,0 +1,44 @@
+package aidan_garvey.mapeditor;
+
+import java.lang.management.ManagementFactory;
+
+// bytes allocated while creating 1M default sectors in a map, and bytes still retained afterwards
+// run with: mvn -Pbench compile, then
+//   java -cp map-core/target/classes:map-bench/target/classes aidan_garvey.mapeditor.SectorAllocationBenchmark
+public class SectorAllocationBenchmark {
+    private static final int SIDE = 1000; // 1M sectors
+
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        // warm up the allocation paths once on a smaller map
+        fill(new GameMap(), 200);
+
+        long heapBefore = Bench.usedHeap();
+        long allocBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+
+        GameMap map = new GameMap();
+        fill(map, SIDE);
+
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocBefore;
+        long retained = Bench.usedHeap() - heapBefore;
+        Bench.sink += map.getFloor(0).size();
+
+        int count = SIDE * SIDE;
+        System.out.printf("sectors created:  %d in %.0f ms%n", count, elapsed / 1e6);
+        System.out.printf("allocated:        %.1f bytes/sector (%.0f MB total)%n", (double) allocated / count, allocated / 1e6);
+        System.out.printf("retained:         %.1f bytes/sector%n", (double) retained / count);
+    }
+
+    private static void fill(GameMap map, int side) {
+        for (int z = 0; z < side; z++) {
+            for (int x = 0; x < side; x++) {
+                if (z != 0 || x != 0) // new maps already have a sector at the origin
+                    map.addSector(new Sector(z, x, 0));
+            }
+        }
+    }
+}
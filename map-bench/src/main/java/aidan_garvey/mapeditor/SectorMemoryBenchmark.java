@@ -0,0 +1,63 @@
+package aidan_garvey.mapeditor;
+
+// measures heap bytes per sector for a 100k-sector floor, comparing the chunked struct-of-arrays store against
+// the previous layout of one object per wall and per surface
+// run with: mvn -Pbench compile, then
+//   java -cp map-core/target/classes:map-bench/target/classes aidan_garvey.mapeditor.SectorMemoryBenchmark
+public class SectorMemoryBenchmark {
+    private static final int SIDE = 317; // ~100k sectors
+    private static final String TEX_DEFAULT = "testTexture1.png";
+
+    public static void main(String[] args) {
+        int count = SIDE * SIDE;
+
+        long before = Bench.usedHeap();
+        LegacySector[] legacy = new LegacySector[count];
+        for (int i = 0; i < count; i++)
+            legacy[i] = new LegacySector(i % SIDE, i / SIDE, 0);
+        long legacyBytes = Bench.usedHeap() - before;
+        Bench.sink += legacy.length;
+        legacy = null;
+
+        before = Bench.usedHeap();
+        Floor floor = new Floor(new TexturePalette());
+        for (int i = 0; i < count; i++)
+            floor.put(new Sector(i % SIDE, i / SIDE, 0));
+        long storeBytes = Bench.usedHeap() - before;
+        Bench.sink += floor.size();
+
+        double legacyPer = (double) legacyBytes / count, storePer = (double) storeBytes / count;
+        System.out.printf("sectors:                 %d%n", count);
+        System.out.printf("object-per-wall layout:  %.1f bytes/sector%n", legacyPer);
+        System.out.printf("chunked store:           %.1f bytes/sector (includes chunk table and Sector views)%n", storePer);
+        System.out.printf("saved:                   %.1f bytes/sector (%.0f%%)%n",
+                legacyPer - storePer, 100 * (legacyPer - storePer) / legacyPer);
+    }
+
+    // copy of the layout Sector used before it became a view over SectorStore
+    private static class LegacySector {
+        final LegacyWall northWall = new LegacyWall(), eastWall = new LegacyWall(),
+                southWall = new LegacyWall(), westWall = new LegacyWall();
+        final LegacySurface floor = new LegacySurface(), ceiling = new LegacySurface();
+        String floorTexture = TEX_DEFAULT, ceilingTexture = TEX_DEFAULT;
+        boolean floorAdjoin, ceilingAdjoin, ceilingIsSky;
+        Object door;
+        final int zPos, xPos, yPos;
+
+        LegacySector(int z, int x, int y) {
+            zPos = z;
+            xPos = x;
+            yPos = y;
+        }
+    }
+
+    private static class LegacyWall {
+        boolean adjoin;
+        String mainTextureName = TEX_DEFAULT, adjTextureName;
+        boolean alignFloor, adjAlignFloor, blocksMovement, blocksProjectiles, hFlip, vFlip, adjHFlip, adjVFlip;
+    }
+
+    private static class LegacySurface {
+        final int[] corners = new int[5];
+    }
+}
@@ -0,0 +1,62 @@
+package aidan_garvey.mapeditor;
+
+import java.util.ArrayList;
+
+// cost of collecting the sectors in one screen-sized viewport, comparing a full scan of the floor with the
+// chunk-bucketed rectangle query used by TileEdDraw.drawStaticLayer
+// run with: mvn -Pbench compile, then
+//   java -cp map-core/target/classes:map-bench/target/classes aidan_garvey.mapeditor.ViewportQueryBenchmark
+public class ViewportQueryBenchmark {
+    private static final int[] SIDES = {100, 224, 448, 1000}; // 10k, 50k, 200k and 1M sectors
+    // roughly what a 1200x675 canvas shows at minimum zoom (16px sectors)
+    private static final int VIEW_W = 76, VIEW_H = 44;
+    private static final int QUERIES = 200;
+
+    public static void main(String[] args) {
+        System.out.printf("%-10s %-18s %-18s %-10s%n", "sectors", "full scan", "rect query", "visible");
+
+        for (int side : SIDES) {
+            Floor floor = new Floor(new TexturePalette());
+            for (int z = 0; z < side; z++) {
+                for (int x = 0; x < side; x++)
+                    floor.put(new Sector(z, x, 0));
+            }
+
+            // pan the viewport diagonally across the floor
+            int[] vz = new int[QUERIES], vx = new int[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                vz[i] = (int) ((long) i * (side - VIEW_W) / QUERIES);
+                vx[i] = (int) ((long) i * (side - VIEW_H) / QUERIES);
+            }
+
+            ArrayList<Sector> out = new ArrayList<>();
+
+            double scanUs = Bench.nsPerOp(QUERIES, () -> {
+                long found = 0;
+                for (int i = 0; i < QUERIES; i++) {
+                    out.clear();
+                    int z1 = vz[i], x1 = vx[i], z2 = z1 + VIEW_W, x2 = x1 + VIEW_H;
+                    floor.forEach(s -> {
+                        if (s.getZPos() >= z1 && s.getZPos() <= z2 && s.getXPos() >= x1 && s.getXPos() <= x2)
+                            out.add(s);
+                    });
+                    found += out.size();
+                }
+                return found;
+            }) / 1000;
+
+            double rectUs = Bench.nsPerOp(QUERIES, () -> {
+                long found = 0;
+                for (int i = 0; i < QUERIES; i++) {
+                    out.clear();
+                    floor.forEachInRect(vz[i], vx[i], vz[i] + VIEW_W, vx[i] + VIEW_H, out::add);
+                    found += out.size();
+                }
+                return found;
+            }) / 1000;
+
+            System.out.printf("%-10d %-18s %-18s %-10d%n", side * side, String.format("%.1f us/frame", scanUs),
+                    String.format("%.1f us/frame", rectUs), (VIEW_W + 1) * (VIEW_H + 1));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package aidan_garvey.mapeditor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// packs the records of one chunk for compressed map files (see MapFile), and unpacks them again
+// the records are transposed so each byte of the record format gets a plane of its own, each plane is delta coded
+// from one record to the next, runs of zeros are run-length coded and the result is deflated. Most sectors are close
+// to the defaults and neighbouring walls tend to share textures, so most planes come out as one long run of zeros.
+// every chunk is deflated on its own, so any chunk in a file can be unpacked without reading the ones before it
+// not thread-safe; call close() when done with it, to free the zlib state
+final class ChunkCodec implements AutoCloseable {
+    private static final int MAX_RECORD_BYTES = MapFile.RECORD_SIZE * Floor.CHUNK_AREA;
+    private static final int MAX_RUN = 256;
+
+    private final Deflater deflater = new Deflater();
+    private final Inflater inflater = new Inflater();
+    private final byte[] records = new byte[MAX_RECORD_BYTES];
+    private final ByteBuffer recordBuf = ByteBuffer.wrap(records).order(ByteOrder.LITTLE_ENDIAN);
+    private final byte[] planes = new byte[MAX_RECORD_BYTES];
+    private final byte[] runs = new byte[2 * MAX_RECORD_BYTES]; // a lone zero takes two bytes
+    private byte[] packed = new byte[MAX_RECORD_BYTES];
+
+    // an empty buffer for writing up to a chunk's worth of records to, before packing them
+    ByteBuffer records() {
+        return recordBuf.clear();
+    }
+
+    // pack the first count records written to records(), returning the length of the packed data in packed()
+    int pack(int count) {
+        int n = count * MapFile.RECORD_SIZE;
+        for (int b = 0; b < MapFile.RECORD_SIZE; b++) {
+            byte prev = 0;
+            for (int r = 0, p = b, out = b * count; r < count; r++, p += MapFile.RECORD_SIZE, out++) {
+                planes[out] = (byte) (records[p] - prev);
+                prev = records[p];
+            }
+        }
+
+        int length = 0;
+        for (int i = 0; i < n; ) {
+            if (planes[i] != 0) {
+                runs[length++] = planes[i++];
+                continue;
+            }
+            int run = 1;
+            while (run < MAX_RUN && i + run < n && planes[i + run] == 0)
+                ++run;
+            runs[length++] = 0;
+            runs[length++] = (byte) (run - 1);
+            i += run;
+        }
+
+        deflater.reset();
+        deflater.setInput(runs, 0, length);
+        deflater.finish();
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == packed.length)
+                packed = Arrays.copyOf(packed, packed.length * 2);
+            size += deflater.deflate(packed, size, packed.length - size);
+        }
+        return size;
+    }
+
+    byte[] packed() {
+        return packed;
+    }
+
+    // unpack count records from the length bytes at p in buf, returning a buffer holding them from position 0
+    ByteBuffer unpack(ByteBuffer buf, int p, int length, int count) throws IOException {
+        inflater.reset();
+        inflater.setInput(buf.slice(p, length));
+        int size = 0;
+        try {
+            while (!inflater.finished()) {
+                int n = inflater.inflate(runs, size, runs.length - size);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary() || size == runs.length))
+                    throw new IOException("Packed chunk at " + p + " is truncated");
+                size += n;
+            }
+        }
+        catch (DataFormatException e) {
+            throw new IOException("Packed chunk at " + p + " is corrupt", e);
+        }
+
+        int n = count * MapFile.RECORD_SIZE, out = 0;
+        for (int i = 0; i < size; ) {
+            byte v = runs[i++];
+            if (v != 0) {
+                if (out == n)
+                    throw new IOException("Packed chunk at " + p + " has too many records");
+                planes[out++] = v;
+                continue;
+            }
+            if (i == size)
+                throw new IOException("Packed chunk at " + p + " is corrupt");
+            int run = (runs[i++] & 0xFF) + 1;
+            if (run > n - out)
+                throw new IOException("Packed chunk at " + p + " has too many records");
+            Arrays.fill(planes, out, out + run, (byte) 0);
+            out += run;
+        }
+        if (out != n)
+            throw new IOException("Packed chunk at " + p + " has too few records");
+
+        for (int b = 0; b < MapFile.RECORD_SIZE; b++) {
+            byte prev = 0;
+            for (int r = 0, q = b, in = b * count; r < count; r++, q += MapFile.RECORD_SIZE, in++) {
+                prev += planes[in];
+                records[q] = prev;
+            }
+        }
+        return recordBuf.clear();
+    }
+
+    @Override
+    public void close() {
+        deflater.end();
+        inflater.end();
+    }
+}
@@ -0,0 +1,118 @@
+package aidan_garvey.mapeditor;
+
+import java.util.function.Consumer;
+
+// open-addressing hash table from packed chunk coordinates to chunks
+// keys are primitive longs, so lookups don't allocate
+class ChunkTable {
+    private static final int INITIAL_CAPACITY = 16; // must be a power of two
+    private static final float MAX_LOAD = 0.5f;
+
+    private long[] keys;
+    private Chunk[] values; // a null value marks an empty slot
+    private int size;
+
+    ChunkTable() {
+        keys = new long[INITIAL_CAPACITY];
+        values = new Chunk[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        keys = new long[INITIAL_CAPACITY];
+        values = new Chunk[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    Chunk get(long key) {
+        int mask = keys.length - 1;
+        for (int i = hash(key) & mask; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key)
+                return values[i];
+        }
+        return null;
+    }
+
+    void put(long key, Chunk value) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = key;
+        values[i] = value;
+        if (++size > keys.length * MAX_LOAD)
+            resize(keys.length * 2);
+    }
+
+    Chunk remove(long key) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (values[i] != null && keys[i] != key)
+            i = (i + 1) & mask;
+
+        Chunk removed = values[i];
+        if (removed == null)
+            return null;
+
+        values[i] = null;
+        --size;
+
+        // shift back any entries in the same probe run so lookups still find them
+        int j = (i + 1) & mask;
+        while (values[j] != null) {
+            int home = hash(keys[j]) & mask;
+            // move entry j into the gap if its home slot is not between the gap and j
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                values[j] = null;
+                i = j;
+            }
+            j = (j + 1) & mask;
+        }
+
+        return removed;
+    }
+
+    void forEachValue(Consumer<Chunk> action) {
+        for (Chunk c : values) {
+            if (c != null)
+                action.accept(c);
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Chunk[] oldValues = values;
+
+        keys = new long[capacity];
+        values = new Chunk[capacity];
+
+        int mask = capacity - 1;
+        for (int k = 0; k < oldKeys.length; k++) {
+            if (oldValues[k] != null) {
+                int i = hash(oldKeys[k]) & mask;
+                while (values[i] != null)
+                    i = (i + 1) & mask;
+                keys[i] = oldKeys[k];
+                values[i] = oldValues[k];
+            }
+        }
+    }
+
+    // spread the bits of both packed coordinates across the low bits used for indexing
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -1,7 +1,15 @@
 package aidan_garvey.mapeditor;
 
 public enum Direction {
-    NORTH, SOUTH, EAST, WEST;
+    NORTH(0, -1), SOUTH(0, 1), EAST(1, 0), WEST(-1, 0);
+
+    // change in z and x position when moving one sector in this direction
+    public final int zOffset, xOffset;
+
+    Direction(int z, int x) {
+        zOffset = z;
+        xOffset = x;
+    }
 
     public static Direction oppositeDirection (Direction d) {
         return switch (d) {
@@ -0,0 +1,316 @@
+package aidan_garvey.mapeditor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+// one floor of the map, stored as a sparse grid of fixed-size chunks
+// sectors are looked up by finding their chunk in a primitive long-keyed table, then indexing into the chunk's array,
+// so a lookup never boxes coordinates and only does one hash probe
+public class Floor {
+    public static final int CHUNK_SHIFT = 5;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT; // chunks are 32 x 32 sectors
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    static final int CHUNK_AREA = CHUNK_SIZE * CHUNK_SIZE;
+
+    private final ChunkTable chunks;
+    private final TexturePalette palette; // palette used by every chunk on this floor
+    private int size; // number of sectors on this floor
+
+    // bounding box of every sector on the floor (inclusive), only meaningful when the floor isn't empty
+    private int minZ, maxZ, minX, maxX;
+    private boolean boundsStale; // set when a sector on the edge of the box is removed, recalculated on demand
+
+    // for a floor read from a map file, decodes its sectors into the floor, then gives them to the map; each is null
+    // once it has run (or for floors made in the editor)
+    private Runnable pendingDecode, pendingRegister;
+    // the floor's chunk directory in the map file while it's waiting to be decoded, see MapFile
+    private int[] pendingChunks;
+    // why the floor couldn't be decoded (the file is corrupt), null if it hasn't failed
+    private IOException loadError;
+
+    public Floor(TexturePalette palette) {
+        this.palette = palette;
+        chunks = new ChunkTable();
+        size = 0;
+        boundsStale = false;
+    }
+
+    public boolean contains(int z, int x) {
+        return get(z, x) != null;
+    }
+
+    public Sector get(int z, int x) {
+        Chunk c = chunks.get(chunkKey(z >> CHUNK_SHIFT, x >> CHUNK_SHIFT));
+        return c == null ? null : c.sectors[slot(z, x)];
+    }
+
+    // place a sector in the grid, replacing any sector already at its position
+    public void put(Sector s) {
+        int z = s.getZPos(), x = s.getXPos();
+        long key = chunkKey(z >> CHUNK_SHIFT, x >> CHUNK_SHIFT);
+
+        Chunk c = chunks.get(key);
+        if (c == null) {
+            c = new Chunk(z >> CHUNK_SHIFT, x >> CHUNK_SHIFT, palette);
+            chunks.put(key, c);
+        }
+
+        int i = slot(z, x);
+        if (c.sectors[i] == null) {
+            ++c.count;
+            ++size;
+            growBounds(z, x);
+        }
+        else if (c.sectors[i] != s) {
+            c.sectors[i].detach();
+        }
+        c.sectors[i] = s;
+        // the sector's data now lives in the chunk's store
+        s.moveTo(c.store, i);
+    }
+
+    // remove and return the sector at the given position, or null if there is none
+    public Sector remove(int z, int x) {
+        long key = chunkKey(z >> CHUNK_SHIFT, x >> CHUNK_SHIFT);
+        Chunk c = chunks.get(key);
+        if (c == null)
+            return null;
+
+        int i = slot(z, x);
+        Sector removed = c.sectors[i];
+        if (removed != null) {
+            // anything still referencing the removed sector keeps a valid, private copy of its data
+            removed.detach();
+            c.sectors[i] = null;
+            --size;
+            if (z == minZ || z == maxZ || x == minX || x == maxX)
+                boundsStale = true;
+            // drop chunks once they are empty so iteration doesn't visit them
+            if (--c.count == 0)
+                chunks.remove(key);
+        }
+        return removed;
+    }
+
+    // floors from a map file start out empty, and are only decoded when FloorIndex first hands them out
+    // decode only touches this floor, so several floors can be decoded at once (see FloorIndex.loadAll); register
+    // updates the map's indexes, so it runs on the thread that edits the map
+    void setPendingLoad(int[] chunks, Runnable decode, Runnable register) {
+        pendingChunks = chunks;
+        pendingDecode = decode;
+        pendingRegister = register;
+    }
+
+    int[] getPendingChunks() {
+        return pendingChunks;
+    }
+
+    boolean isLoaded() {
+        return pendingRegister == null;
+    }
+
+    // a floor that fails to decode is reported once and left waiting in the file, empty, so it's never registered
+    // half decoded, and an incremental save still keeps its records as they were
+    void decode() {
+        Runnable decode = pendingDecode;
+        if (decode == null || loadError != null)
+            return;
+        try {
+            decode.run();
+            pendingDecode = null;
+        }
+        catch (UncheckedIOException e) {
+            chunks.clear();
+            loadError = e.getCause();
+            System.err.println("ERROR: Could not load a floor of the map: " + loadError.getMessage());
+        }
+    }
+
+    void load() throws IOException {
+        Runnable register = pendingRegister;
+        if (register != null) {
+            decode();
+            if (loadError != null)
+                throw loadError;
+            pendingRegister = null;
+            pendingChunks = null;
+            register.run();
+        }
+    }
+
+    // chunk at the given chunk position, creating an empty one if needed (used when loading a map)
+    Chunk getOrCreateChunk(int chunkZ, int chunkX) {
+        long key = chunkKey(chunkZ, chunkX);
+        Chunk c = chunks.get(key);
+        if (c == null) {
+            c = new Chunk(chunkZ, chunkX, palette);
+            chunks.put(key, c);
+        }
+        return c;
+    }
+
+    // place a sector whose data has already been written into an empty slot of the chunk's store
+    void putLoaded(Chunk c, int slot, Sector s) {
+        c.sectors[slot] = s;
+        ++c.count;
+        ++size;
+        growBounds(s.getZPos(), s.getXPos());
+    }
+
+    void forEachChunk(Consumer<Chunk> action) {
+        chunks.forEachValue(action);
+    }
+
+    int chunkCount() {
+        return chunks.size();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getMinZ() {
+        updateBounds();
+        return minZ;
+    }
+
+    public int getMaxZ() {
+        updateBounds();
+        return maxZ;
+    }
+
+    public int getMinX() {
+        updateBounds();
+        return minX;
+    }
+
+    public int getMaxX() {
+        updateBounds();
+        return maxX;
+    }
+
+    private void growBounds(int z, int x) {
+        if (size == 1) {
+            minZ = maxZ = z;
+            minX = maxX = x;
+            boundsStale = false;
+        }
+        else {
+            minZ = Math.min(minZ, z);
+            maxZ = Math.max(maxZ, z);
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+        }
+    }
+
+    private void updateBounds() {
+        if (!boundsStale)
+            return;
+
+        minZ = minX = Integer.MAX_VALUE;
+        maxZ = maxX = Integer.MIN_VALUE;
+        forEach(s -> {
+            minZ = Math.min(minZ, s.getZPos());
+            maxZ = Math.max(maxZ, s.getZPos());
+            minX = Math.min(minX, s.getXPos());
+            maxX = Math.max(maxX, s.getXPos());
+        });
+        boundsStale = false;
+    }
+
+    // change every use of one texture id on this floor to another
+    void remapTexture(short from, short to) {
+        chunks.forEachValue(c -> c.store.remapTexture(from, to));
+    }
+
+    // visit every sector on the floor, in no particular order
+    public void forEach(Consumer<Sector> action) {
+        chunks.forEachValue(c -> {
+            for (Sector s : c.sectors) {
+                if (s != null)
+                    action.accept(s);
+            }
+        });
+    }
+
+    // visit every sector with z1 <= z <= z2 and x1 <= x <= x2, in no particular order
+    // only the chunks overlapping the rectangle are visited, so the cost depends on the area queried rather than
+    // the number of sectors on the floor
+    public void forEachInRect(int z1, int x1, int z2, int x2, Consumer<Sector> action) {
+        if (z1 > z2 || x1 > x2 || size == 0)
+            return;
+
+        int cz1 = z1 >> CHUNK_SHIFT, cz2 = z2 >> CHUNK_SHIFT;
+        int cx1 = x1 >> CHUNK_SHIFT, cx2 = x2 >> CHUNK_SHIFT;
+        long chunksInRect = (long) (cz2 - cz1 + 1) * (cx2 - cx1 + 1);
+
+        // if the rectangle covers more chunk positions than there are chunks, checking every chunk is cheaper
+        if (chunksInRect > chunks.size()) {
+            chunks.forEachValue(c -> {
+                if (c.chunkZ >= cz1 && c.chunkZ <= cz2 && c.chunkX >= cx1 && c.chunkX <= cx2)
+                    visitRect(c, z1, x1, z2, x2, action);
+            });
+        }
+        else {
+            for (int cx = cx1; cx <= cx2; cx++) {
+                for (int cz = cz1; cz <= cz2; cz++) {
+                    Chunk c = chunks.get(chunkKey(cz, cx));
+                    if (c != null)
+                        visitRect(c, z1, x1, z2, x2, action);
+                }
+            }
+        }
+    }
+
+    // visit the sectors of one chunk which are inside the rectangle
+    private static void visitRect(Chunk c, int z1, int x1, int z2, int x2, Consumer<Sector> action) {
+        int baseZ = c.chunkZ << CHUNK_SHIFT, baseX = c.chunkX << CHUNK_SHIFT;
+
+        // clamp the rectangle to this chunk, in chunk-local coordinates
+        int lz1 = Math.max(z1 - baseZ, 0), lz2 = Math.min(z2 - baseZ, CHUNK_MASK);
+        int lx1 = Math.max(x1 - baseX, 0), lx2 = Math.min(x2 - baseX, CHUNK_MASK);
+
+        for (int lx = lx1; lx <= lx2; lx++) {
+            int row = lx << CHUNK_SHIFT;
+            for (int lz = lz1; lz <= lz2; lz++) {
+                Sector s = c.sectors[row | lz];
+                if (s != null)
+                    action.accept(s);
+            }
+        }
+    }
+
+    static long chunkKey(int chunkZ, int chunkX) {
+        return ((long) chunkZ << 32) | (chunkX & 0xFFFFFFFFL);
+    }
+
+    // index of a sector within its chunk (row-major, x is the row)
+    static int slot(int z, int x) {
+        return ((x & CHUNK_MASK) << CHUNK_SHIFT) | (z & CHUNK_MASK);
+    }
+}
+
+// a CHUNK_SIZE x CHUNK_SIZE block of sectors
+// the Sector objects are views, the data for every sector in the chunk is kept in the chunk's store
+class Chunk {
+    final Sector[] sectors = new Sector[Floor.CHUNK_AREA];
+    final SectorStore store;
+    final int chunkZ, chunkX; // position of the chunk, in chunks
+    int count; // number of non-null entries in sectors
+
+    // where this chunk's records are in the map's file, -1 if they have never been saved
+    // the file copy is up to date as long as the store hasn't been modified since
+    long savedOffset = -1;
+    int savedLength; // length of the records in the file, which are packed in a compressed file
+
+    Chunk(int chunkZ, int chunkX, TexturePalette palette) {
+        this.chunkZ = chunkZ;
+        this.chunkX = chunkX;
+        store = new SectorStore(Floor.CHUNK_AREA, palette);
+    }
+}
@@ -0,0 +1,129 @@
+package aidan_garvey.mapeditor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinTask;
+
+// sparse set of floors, kept sorted by floor number
+// only floors that have been written to exist, so looking up any floor number never allocates
+// floors read from a map file are decoded the first time they're handed out, so opening a map only pays for the
+// floors that are actually looked at. A floor that can't be decoded is handed out empty and still waiting (see
+// Floor.decode); only loadAll reports the failure to its caller
+class FloorIndex {
+    private int[] numbers; // floor numbers in ascending order
+    private Floor[] floors; // floors[i] is floor number numbers[i]
+    private int size;
+
+    FloorIndex() {
+        numbers = new int[4];
+        floors = new Floor[4];
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // floor number of the i-th floor, from lowest to highest
+    int numberAt(int i) {
+        return numbers[i];
+    }
+
+    Floor floorAt(int i) {
+        return tryLoad(floors[i]);
+    }
+
+    Floor get(int number) {
+        Floor f = peek(number);
+        return f == null ? null : tryLoad(f);
+    }
+
+    // the floor without decoding it, for callers that only care about sectors that are already loaded
+    Floor peek(int number) {
+        int i = Arrays.binarySearch(numbers, 0, size, number);
+        return i >= 0 ? floors[i] : null;
+    }
+
+    // the i-th floor without decoding it
+    Floor peekAt(int i) {
+        return floors[i];
+    }
+
+    boolean isLoaded(int i) {
+        return floors[i].isLoaded();
+    }
+
+    // decode every floor that's still waiting in a map file
+    // the floors are decoded in parallel, on the fork/join pool this is called from (or the common pool), then
+    // registered with the map one at a time, since that updates indexes shared by every floor
+    // throws the first floor's failure once every floor that can be decoded has been
+    void loadAll() throws IOException {
+        ArrayList<ForkJoinTask<?>> decodes = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (!floors[i].isLoaded())
+                decodes.add(ForkJoinTask.adapt(floors[i]::decode));
+        }
+        if (decodes.size() > 1)
+            ForkJoinTask.invokeAll(decodes);
+
+        IOException failed = null;
+        for (int i = 0; i < size; i++) {
+            try {
+                floors[i].load();
+            }
+            catch (IOException e) {
+                if (failed == null)
+                    failed = new IOException("Floor " + numbers[i] + " could not be loaded: " + e.getMessage(), e);
+            }
+        }
+        if (failed != null)
+            throw failed;
+    }
+
+    private static Floor tryLoad(Floor f) {
+        try {
+            f.load();
+        }
+        catch (IOException e) {
+            // the floor has already reported it, and is handed out empty
+        }
+        return f;
+    }
+
+    Floor getOrCreate(int number, TexturePalette palette) {
+        int i = Arrays.binarySearch(numbers, 0, size, number);
+        if (i >= 0)
+            return tryLoad(floors[i]);
+
+        // insert new floor where binarySearch says it belongs
+        i = -(i + 1);
+        if (size == numbers.length) {
+            numbers = Arrays.copyOf(numbers, size * 2);
+            floors = Arrays.copyOf(floors, size * 2);
+        }
+        System.arraycopy(numbers, i, numbers, i + 1, size - i);
+        System.arraycopy(floors, i, floors, i + 1, size - i);
+
+        Floor f = new Floor(palette);
+        numbers[i] = number;
+        floors[i] = f;
+        ++size;
+        return f;
+    }
+
+    // drop every floor with no sectors left on it
+    void removeEmpty() {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            // floors waiting to be decoded aren't empty, empty floors are never saved
+            if (!floors[i].isLoaded() || !floors[i].isEmpty()) {
+                numbers[kept] = numbers[i];
+                floors[kept] = floors[i];
+                ++kept;
+            }
+        }
+        Arrays.fill(floors, kept, size, null);
+        size = kept;
+    }
+}
@@ -0,0 +1,628 @@
+package aidan_garvey.mapeditor;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+public class GameMap {
+    // told which sectors a change made through the map affected, as a rectangle (inclusive) on floor y, so a view of
+    // the map can redraw just that part. Covers what a top-down view shows: sectors being added or removed, and
+    // changes to their wall, floor and ceiling adjoins and to their doors' presence, orientation and position
+    public interface DamageListener {
+        void damaged(int y, int z1, int x1, int z2, int x2);
+    }
+
+    private final KeyRegistry keys; // every key in the map, and which doors use them
+    private final FloorIndex floors;
+    private final SectorTable sectors; // every sector in the map, by handle
+    private final RegionIndex regions; // groups of sectors connected by adjoins
+    private final TexturePalette palette; // every texture name used in the map
+
+    // the file the map was last loaded from or saved to, and its length at the time, so saving to it again can just
+    // append the chunks that changed (see MapFile)
+    private Path savedFile;
+    private long savedLength;
+    // the mapped file that floors still waiting to be decoded are read from, null once it's been released
+    private MappedByteBuffer mappedFile;
+
+    private MapJournal journal; // records edits for crash recovery, null if the map isn't being journaled
+    private DamageListener damageListener; // null if nothing is listening
+
+    public GameMap() {
+        this(true);
+    }
+
+    // a map with no sectors at all, to be filled in by MapFile
+    GameMap(boolean withDefaultSector) {
+        palette = new TexturePalette();
+        floors = new FloorIndex();
+        sectors = new SectorTable();
+        regions = new RegionIndex(sectors);
+        keys = new KeyRegistry();
+
+        // add default floor for empty maps, with a default sector
+        if (withDefaultSector)
+            addSector(new Sector(0, 0, 0));
+    }
+
+    // returns null if no sector has ever been placed on the floor (looking up a floor never creates it)
+    public Floor getFloor(int index) {
+        return floors.get(index);
+    }
+
+    // number of floors that currently exist
+    public int getFloorCount() {
+        return floors.size();
+    }
+
+    // floor number of the i-th existing floor, from lowest to highest
+    public int getFloorNumber(int i) {
+        return floors.numberAt(i);
+    }
+
+    // remove floors that no longer have any sectors (done when saving)
+    public void compactFloors() {
+        floors.removeEmpty();
+    }
+
+    // place a new sector in the map, creating its floor if this is the first sector on it
+    // any sector already at the same position is removed first
+    public void addSector(Sector s) {
+        Floor f = floors.getOrCreate(s.getYPos(), palette);
+        // a floor that couldn't be read from the map file only holds what's still in the file
+        if (!f.isLoaded()) {
+            System.err.println("ERROR: Floor " + s.getYPos() + " could not be loaded, so sectors can't be added to it");
+            return;
+        }
+        removeSector(s.getZPos(), s.getXPos(), s.getYPos());
+
+        f.put(s);
+        regions.prepareSlot(sectors.nextIndex());
+        s.setHandle(sectors.add(s));
+        regions.add(s);
+        linkNeighbours(s);
+
+        // a sector that was in the map before may still have its door, and the door its key
+        if (s.hasDoor())
+            keys.addUsage(s.getDoorKeyId(), s.getHandle());
+        damaged(s);
+    }
+
+    // give a sector that MapFile has already placed in its floor a handle, neighbours, region and key usage
+    // the sector's adjoins are joined to whichever neighbours are already loaded; neighbours loaded later join back
+    // to it, so chunks can be loaded in any order
+    void registerLoaded(Sector s) {
+        regions.prepareSlot(sectors.nextIndex());
+        s.setHandle(sectors.add(s));
+        regions.add(s);
+        linkNeighbours(s);
+        joinAdjoined(s);
+
+        if (s.hasDoor())
+            keys.addUsage(s.getDoorKeyId(), s.getHandle());
+    }
+
+    // a sector already in the map has had all of its data overwritten (by MapJournal), so its region and key usage
+    // may be out of date
+    void dataReplaced(Sector s, int oldKeyId) {
+        keys.removeUsage(oldKeyId, s.getHandle());
+        if (s.hasDoor())
+            keys.addUsage(s.getDoorKeyId(), s.getHandle());
+
+        // the region is rebuilt from its adjoins if any were removed
+        regions.split(s);
+        joinAdjoined(s);
+    }
+
+    private void joinAdjoined(Sector s) {
+        for (Direction d : Direction.values()) {
+            Sector n = s.getNeighbour(d);
+            if (n != null && s.getWallAdjoin(d))
+                regions.join(s, n);
+        }
+        if (s.getNeighbourBelow() != null && s.getFloorAdjoin())
+            regions.join(s, s.getNeighbourBelow());
+        if (s.getNeighbourAbove() != null && s.getCeilingAdjoin())
+            regions.join(s, s.getNeighbourAbove());
+    }
+
+    void setJournal(MapJournal j) {
+        journal = j;
+    }
+
+    // only one listener at a time, null to stop listening
+    public void setDamageListener(DamageListener l) {
+        damageListener = l;
+    }
+
+    private void damaged(Sector s) {
+        if (damageListener != null)
+            damageListener.damaged(s.getYPos(), s.getZPos(), s.getXPos(), s.getZPos(), s.getXPos());
+    }
+
+    // two sectors changed together, reported as one rectangle if they're on the same floor
+    private void damaged(Sector s, Sector t) {
+        if (damageListener == null)
+            return;
+        if (s.getYPos() != t.getYPos()) {
+            damaged(s);
+            damaged(t);
+            return;
+        }
+        damageListener.damaged(s.getYPos(), Math.min(s.getZPos(), t.getZPos()), Math.min(s.getXPos(), t.getXPos()),
+                Math.max(s.getZPos(), t.getZPos()), Math.max(s.getXPos(), t.getXPos()));
+    }
+
+    // decode every floor still waiting in a map file, for operations that need to see the whole map
+    // a floor that can't be decoded has already been reported, and is left out
+    private void loadAllFloors() {
+        try {
+            floors.loadAll();
+        }
+        catch (IOException e) {
+            // already reported by the floor
+        }
+    }
+
+    Path getSavedFile() {
+        return savedFile;
+    }
+
+    long getSavedLength() {
+        return savedLength;
+    }
+
+    void setSavedFile(Path file, long length) {
+        savedFile = file;
+        savedLength = length;
+    }
+
+    MappedByteBuffer getMappedFile() {
+        return mappedFile;
+    }
+
+    void setMappedFile(MappedByteBuffer mapped) {
+        mappedFile = mapped;
+    }
+
+    FloorIndex floorIndex() {
+        return floors;
+    }
+
+    KeyRegistry keyRegistry() {
+        return keys;
+    }
+
+    // ***** Regions: groups of sectors connected through adjoined walls, floors and ceilings ***** //
+
+    // id of the region the sector is in, or -1 if the sector isn't in this map
+    // region ids stay the same until the map is next edited
+    public int getRegion(Sector s) {
+        if (s == null || sectors.get(s.getHandle()) != s)
+            return -1;
+        // a region can reach into floors that haven't been decoded yet
+        loadAllFloors();
+        return regions.regionOf(s);
+    }
+
+    public int getRegionSize(int region) {
+        loadAllFloors();
+        return regions.regionSize(region);
+    }
+
+    // visit every sector in a region
+    public void forEachInRegion(int region, Consumer<Sector> action) {
+        loadAllFloors();
+        regions.forEachInRegion(region, action);
+    }
+
+    // connect a newly added sector with the sectors around it, in both directions
+    private void linkNeighbours(Sector s) {
+        int z = s.getZPos(), x = s.getXPos(), y = s.getYPos();
+
+        Floor f = floors.get(y);
+        for (Direction d : Direction.values()) {
+            Sector n = f.get(z + d.zOffset, x + d.xOffset);
+            s.setNeighbour(d, n);
+            if (n != null)
+                n.setNeighbour(Direction.oppositeDirection(d), s);
+        }
+
+        // floors that haven't been decoded yet link themselves to this one when they are
+        Floor fAbove = floors.peek(y + 1);
+        Sector above = fAbove == null ? null : fAbove.get(z, x);
+        s.setNeighbourAbove(above);
+        if (above != null)
+            above.setNeighbourBelow(s);
+
+        Floor fBelow = floors.peek(y - 1);
+        Sector below = fBelow == null ? null : fBelow.get(z, x);
+        s.setNeighbourBelow(below);
+        if (below != null)
+            below.setNeighbourAbove(s);
+    }
+
+    // disconnect a sector being removed from the sectors around it
+    private void unlinkNeighbours(Sector s) {
+        for (Direction d : Direction.values()) {
+            Sector n = s.getNeighbour(d);
+            if (n != null)
+                n.setNeighbour(Direction.oppositeDirection(d), null);
+            s.setNeighbour(d, null);
+        }
+
+        if (s.getNeighbourAbove() != null)
+            s.getNeighbourAbove().setNeighbourBelow(null);
+        if (s.getNeighbourBelow() != null)
+            s.getNeighbourBelow().setNeighbourAbove(null);
+        s.setNeighbourAbove(null);
+        s.setNeighbourBelow(null);
+    }
+
+    // look up a sector by its handle, null if it has been removed from the map
+    public Sector getSector(int handle) {
+        return sectors.get(handle);
+    }
+
+    public TexturePalette getPalette() {
+        return palette;
+    }
+
+    // swap one texture for another everywhere in the map
+    // if the new texture isn't used yet this only renames the palette entry, otherwise every floor is remapped by id
+    public void replaceTexture(String oldName, String newName) {
+        if (oldName == null || !palette.contains(oldName) || Objects.equals(oldName, newName))
+            return;
+
+        if (journal != null)
+            journal.textureReplaced(oldName, newName);
+
+        short from = palette.idOf(oldName);
+        if (!palette.rename(from, newName)) {
+            short to = palette.idOf(newName);
+            for (int i = 0; i < floors.size(); i++)
+                floors.floorAt(i).remapTexture(from, to);
+        }
+    }
+
+    // add a new key to the list of keys on the map
+    public void addKey(String s) {
+        keys.idOf(s);
+    }
+
+    public List<String> getKeys() {
+        return keys.getNames();
+    }
+
+    // fails if the key doesn't exist or the new name is taken; doors using the key keep using it
+    public boolean renameKey(String oldName, String newName) {
+        return keys.rename(oldName, newName);
+    }
+
+    // remove a key from the map, and from every door locked with it
+    public void deleteKey(String name) {
+        loadAllFloors();
+        for (int handle : keys.delete(name)) {
+            Sector s = sectors.get(handle);
+            if (s != null)
+                s.setDoorKeyId(KeyRegistry.NO_KEY);
+        }
+    }
+
+    // every door sector locked with the given key
+    public List<Sector> getDoorsUsingKey(String name) {
+        loadAllFloors();
+        int[] handles = keys.doorsUsing(keys.find(name));
+        List<Sector> result = new ArrayList<>(handles.length);
+        for (int handle : handles) {
+            Sector s = sectors.get(handle);
+            if (s != null)
+                result.add(s);
+        }
+        return result;
+    }
+
+    public boolean canAdjoinWall(Sector s, Direction whichWall) {
+        return s.getNeighbour(whichWall) != null;
+    }
+
+    public void setWallAdjoin(Sector s, Direction whichWall, boolean val) {
+        // get sector on other side of current wall
+        Sector t = s.getNeighbour(whichWall);
+
+        // if adjacent sector exists
+        if (t != null) {
+            // if wall is being un-adjoined, disable all adjoin-specific options for both walls
+            if (!val) {
+                // each function here performs the operation for this wall and the opposite wall
+                setBlocksMovement(s, whichWall, false);
+                setBlocksProjectiles(s, whichWall, false);
+                setAdjAlignToFloor(s, whichWall, false);
+            }
+            // if the wall is being adjoined, set the texture on both sides to null (most likely to be what the user wants)
+            else {
+                s.setMainTexture(whichWall, null);
+                t.setMainTexture(Direction.oppositeDirection(whichWall), null);
+            }
+
+            // adjoin this wall and the adjacent sector's wall
+            s.setWallAdjoin(whichWall, val);
+            // for sector on other side of wall, set corresponding wall's adjoin value
+            t.setWallAdjoin(Direction.oppositeDirection(whichWall), val);
+
+            updateRegions(s, t, val);
+            damaged(s, t);
+
+        }
+        // if no adjacent sector exists, do nothing and indicate failure
+    }
+
+    public void setBlocksMovement(Sector s, Direction whichWall, boolean val) {
+        // if wall is adjoined, this operation can be done
+        if (s.getWallAdjoin(whichWall) && s.getNeighbour(whichWall) != null) {
+            s.setWallBlocksMovement(whichWall, val);
+            s.getNeighbour(whichWall).setWallBlocksMovement(Direction.oppositeDirection(whichWall), val);
+
+        }
+        // if wall wasn't adjoined, this operation fails
+    }
+
+    public void setBlocksProjectiles(Sector s, Direction whichWall, boolean val) {
+        // if wall is adjoined, this operation can be done
+        if (s.getWallAdjoin(whichWall) && s.getNeighbour(whichWall) != null) {
+            s.setWallBlocksProjectiles(whichWall, val);
+            s.getNeighbour(whichWall).setWallBlocksProjectiles(Direction.oppositeDirection(whichWall), val);
+
+        }
+        // if wall wasn't adjoined, this operation fails
+    }
+
+    public void setAlignToFloor(Sector s, Direction whichWall, boolean toFloor) {
+        s.setAlignToFloor(whichWall, toFloor);
+    }
+
+    public void setAdjAlignToFloor(Sector s, Direction whichWall, boolean toFloor) {
+        // can only be done if wall is adjoined
+        if (s.getWallAdjoin(whichWall)) {
+            s.setAdjAlignToFloor(whichWall, toFloor);
+        }
+    }
+
+    public void setFloorAdjoin(Sector s, boolean val) {
+        // can only be done if:
+            // no part of the floor is raised
+            // there is a sector right below this one
+            // that sector's ceiling is not lowered at any point, nor a sky
+        floors.get(s.getYPos() - 1); // make sure the floor below is decoded, so the neighbour link is there
+        Sector below = s.getNeighbourBelow();
+        if (s.isFloorFlush()
+                && below != null
+                && below.isCeilingFlush()
+                && !below.getSky())
+        {
+            s.setFloorAdjoin(val);
+            below.setCeilingAdjoin(val);
+            updateRegions(s, below, val);
+            damaged(s, below);
+        }
+        // if conditions weren't met, operation failed
+
+        // note: consider a "forceFloorAdjoin" which only checks for a sector below and clears any modified floor/ceiling height
+            // if setFloorAdjoin fails due to heights, a dialog could be shown that asks the user if they want to force the adjoin
+    }
+
+    public void setCeilingAdjoin(Sector s, boolean val) {
+        // can only be done if:
+            // no part of the ceiling is lowered, and the ceiling is not a sky
+            // there is a sector right above this one
+            // that sector's floor is not raised at any point
+        floors.get(s.getYPos() + 1);
+        Sector above = s.getNeighbourAbove();
+        if (s.isCeilingFlush() && !s.getSky()
+                && above != null
+                && above.isFloorFlush())
+        {
+            s.setCeilingAdjoin(val);
+            above.setFloorAdjoin(val);
+            updateRegions(s, above, val);
+            damaged(s, above);
+        }
+        // if conditions weren't met, operation failed
+    }
+
+    // keep the region index in step with an adjoin between two sectors being made or removed
+    private void updateRegions(Sector s, Sector t, boolean adjoined) {
+        // sectors that aren't in the map (e.g. one that's selected but not created yet) have no region
+        if (sectors.get(s.getHandle()) != s || sectors.get(t.getHandle()) != t)
+            return;
+
+        if (adjoined)
+            regions.join(s, t);
+        else
+            regions.split(s);
+    }
+
+    public void setCeilingIsSky(Sector s, boolean val) {
+        // can't be done if ceiling is adjoined (adjoined ceilings have no texture)
+        if (!s.getCeilingAdjoin()) {
+            s.setSky(val);
+        }
+    }
+
+    public boolean sectorExists(int z, int x, int y) {
+        return getSector(z, x, y) != null;
+    }
+
+    public Sector getSector(int z, int x, int y) {
+        Floor f = floors.get(y);
+        return f == null ? null : f.get(z, x);
+    }
+
+    // toggle any options for adjacent sectors such as wall adjoins, then remove the sector
+    public void removeSector(int z, int x, int y) {
+        Sector toRemove = getSector(z, x, y);
+
+        if (toRemove != null) {
+            setFloorAdjoin(toRemove, false);
+            setCeilingAdjoin(toRemove, false);
+
+            for (Direction d : Direction.values()) {
+                // also removes any blocksMovement or blocksProjectiles on adjacent walls
+                setWallAdjoin(toRemove, d, false);
+            }
+
+            keys.removeUsage(toRemove.getDoorKeyId(), toRemove.getHandle());
+            regions.remove(toRemove);
+            unlinkNeighbours(toRemove);
+            floors.get(y).remove(z, x);
+            sectors.remove(toRemove.getHandle());
+            toRemove.setHandle(SectorTable.NO_HANDLE);
+
+            if (journal != null)
+                journal.sectorRemoved(z, x, y);
+            damaged(toRemove);
+        }
+    }
+
+    public void removeSector(Sector toRemove) {
+        removeSector(toRemove.getZPos(), toRemove.getXPos(), toRemove.getYPos());
+    }
+
+    // ***** Door-related methods ***** //
+
+    // todo: I'm probably going to have to devise a way to link multiple doors in terms of activation (maybe a separate map mode?)
+
+    // Add a door to the sector if possible.
+    // There must be walls on both sides of a door.
+    // Tries to place a door in the following places:
+        // Vertical (requires floor and ceiling)
+        // Horizontal north-south (needs north + south walls)
+        // Horizontal east-west (needs east + west walls)
+    // If none are possible, door is not placed.
+    public void addDoor(Sector s) {
+        if (s != null) {
+            // a door already there is replaced, along with its key
+            if (s.hasDoor())
+                keys.removeUsage(s.getDoorKeyId(), s.getHandle());
+            s.addDoor(true, true);
+            damaged(s);
+        }
+    }
+
+    public void removeDoor(Sector s) {
+        if (s != null) {
+            keys.removeUsage(s.getDoorKeyId(), s.getHandle());
+            s.removeDoor();
+            damaged(s);
+        }
+    }
+
+    public boolean hasDoor(Sector s){
+        return s != null && s.hasDoor();
+    }
+
+    // toggle door orientation b/w north-south and east-west
+    public void toggleDoorOrientation(Sector s) {
+        s.setDoorNorthSouth(!s.doorIsNorthSouth());
+        damaged(s);
+    }
+
+    public boolean doorIsNorthSouth(Sector s) {
+        return s == null || s.doorIsNorthSouth();
+    }
+
+    public void setDoorPos(Sector s, int pos) {
+        if (s != null) {
+            s.setDoorPos(pos);
+            damaged(s);
+        }
+    }
+
+    public int getDoorPos(Sector s) {
+        return s == null ? 0 : s.getDoorPos();
+    }
+
+    public void setDoorVertical(Sector s, boolean vertical) {
+        if (s != null)
+            s.setDoorVertical(vertical);
+    }
+
+    public boolean doorIsVertical(Sector s) {
+        return s == null || s.doorIsVertical();
+    }
+
+    public void setDoorType(Sector s, int type) {
+        if (s != null) {
+            DoorType dt;
+
+            switch (type) {
+                case 1 -> dt = DoorType.MIDDLE;
+                case 2 -> dt = DoorType.DOWN_RIGHT;
+                default -> dt = DoorType.UP_LEFT;
+            }
+
+            s.setDoorType(dt);
+        }
+    }
+
+    public int getDoorType(Sector s) {
+        if (s == null) return 0;
+
+        int type;
+        switch(s.getDoorType()) {
+            case MIDDLE -> type = 1;
+            case DOWN_RIGHT -> type = 2;
+            default -> type = 0;
+        }
+
+        return type;
+    }
+
+    public void setDoorSpeed(Sector s, double speed) {
+        if (s != null)
+            s.setDoorSpeed(speed);
+    }
+
+    public double getDoorSpeed(Sector s) {
+        return s == null ? 0.0 : s.getDoorSpeed();
+    }
+
+    public void setDoorTex1(Sector s, String t) {
+        if (s != null)
+            s.setDoorTexture1(t);
+    }
+
+    public String getDoorTex1(Sector s) {
+        return s == null ? null : s.getDoorTexture1();
+    }
+
+    public void setDoorTex2(Sector s, String t) {
+        if (s != null)
+            s.setDoorTexture2(t);
+    }
+
+    public String getDoorTex2(Sector s) {
+        return s == null ? null : s.getDoorTexture2();
+    }
+
+    // lock a door with a key (adding the key to the map if it's new), or unlock it with null
+    // returns false, changing nothing, if there's no door in the sector to lock
+    public boolean setDoorKey(Sector s, String k) {
+        if (s == null || !s.hasDoor())
+            return false;
+
+        int newId = keys.idOf(k);
+        keys.removeUsage(s.getDoorKeyId(), s.getHandle());
+        s.setDoorKeyId(newId);
+        keys.addUsage(newId, s.getHandle());
+        return true;
+    }
+
+    public String getDoorKey(Sector s) {
+        return s == null ? null : keys.nameOf(s.getDoorKeyId());
+    }
+}
@@ -0,0 +1,143 @@
+package aidan_garvey.mapeditor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+// every key in a map, with a stable id for each and a reverse index of which doors use it
+// doors store key ids, so renaming a key touches nothing but the registry, and finding or clearing the doors that
+// use a key only visits those doors
+class KeyRegistry {
+    static final int NO_KEY = -1;
+
+    private final HashMap<String, Integer> ids;
+    private final ArrayList<String> names; // indexed by id, null for deleted keys (ids are never reused)
+    private final ArrayList<String> liveNames; // names of keys that haven't been deleted, in the order they were added
+    private int[][] doors; // handles of the door sectors using each key
+    private int[] doorCounts;
+
+    KeyRegistry() {
+        ids = new HashMap<>();
+        names = new ArrayList<>();
+        liveNames = new ArrayList<>();
+        doors = new int[0][];
+        doorCounts = new int[0];
+    }
+
+    // id of the key with the given name, adding the key if it doesn't exist yet
+    int idOf(String name) {
+        if (name == null)
+            return NO_KEY;
+
+        Integer id = ids.get(name);
+        if (id != null)
+            return id;
+
+        int newId = names.size();
+        names.add(name);
+        liveNames.add(name);
+        ids.put(name, newId);
+
+        growDoors(newId);
+        doors[newId] = new int[0];
+        return newId;
+    }
+
+    // take the next id for a key that was deleted, for loading a map whose registry has deleted keys in it, so
+    // every id read from the file is the same as the id it had when the file was saved
+    int addDeleted() {
+        int newId = names.size();
+        names.add(null);
+        growDoors(newId);
+        return newId;
+    }
+
+    private void growDoors(int id) {
+        if (id == doors.length) {
+            doors = Arrays.copyOf(doors, Math.max(4, id * 2));
+            doorCounts = Arrays.copyOf(doorCounts, doors.length);
+        }
+    }
+
+    // NO_KEY if there's no key with this name
+    int find(String name) {
+        Integer id = name == null ? null : ids.get(name);
+        return id == null ? NO_KEY : id;
+    }
+
+    String nameOf(int id) {
+        return id == NO_KEY ? null : names.get(id);
+    }
+
+    // number of ids handed out so far, including deleted keys
+    int idCount() {
+        return names.size();
+    }
+
+    boolean contains(String name) {
+        return ids.containsKey(name);
+    }
+
+    List<String> getNames() {
+        return Collections.unmodifiableList(liveNames);
+    }
+
+    // fails if there is no key named oldName or a key named newName already exists
+    boolean rename(String oldName, String newName) {
+        Integer id = ids.get(oldName);
+        if (id == null || newName == null || ids.containsKey(newName))
+            return false;
+
+        ids.remove(oldName);
+        ids.put(newName, id);
+        names.set(id, newName);
+        liveNames.set(liveNames.indexOf(oldName), newName);
+        return true;
+    }
+
+    // remove a key, returning the handles of the doors that were using it
+    int[] delete(String name) {
+        Integer id = ids.remove(name);
+        if (id == null)
+            return new int[0];
+
+        names.set(id, null);
+        liveNames.remove(name);
+
+        int[] users = Arrays.copyOf(doors[id], doorCounts[id]);
+        doors[id] = null;
+        doorCounts[id] = 0;
+        return users;
+    }
+
+    // handles of the door sectors using a key
+    int[] doorsUsing(int id) {
+        if (id == NO_KEY || doors[id] == null)
+            return new int[0];
+        return Arrays.copyOf(doors[id], doorCounts[id]);
+    }
+
+    void addUsage(int id, int doorHandle) {
+        if (id == NO_KEY || doors[id] == null)
+            return;
+
+        if (doorCounts[id] == doors[id].length)
+            doors[id] = Arrays.copyOf(doors[id], Math.max(4, doorCounts[id] * 2));
+        doors[id][doorCounts[id]++] = doorHandle;
+    }
+
+    void removeUsage(int id, int doorHandle) {
+        if (id == NO_KEY || doors[id] == null)
+            return;
+
+        int[] users = doors[id];
+        for (int i = 0; i < doorCounts[id]; i++) {
+            if (users[i] == doorHandle) {
+                users[i] = users[--doorCounts[id]];
+                return;
+            }
+        }
+    }
+}
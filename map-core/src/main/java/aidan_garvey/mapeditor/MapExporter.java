@@ -0,0 +1,251 @@
+package aidan_garvey.mapeditor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// exports maps in the flat format the game loads (all values little-endian)
+//
+//   header        HEADER_SIZE bytes: magic, version, number of floors, sectors, textures and keys
+//   names         texture names, then key names (length-prefixed UTF-8, length -1 for deleted keys)
+//   floors        for each floor, lowest first: floor number, index of its first sector, number of sectors
+//   sectors       every sector as a fixed-width record (SECTOR_SIZE bytes), floor by floor, each floor chunk by
+//                 chunk (sorted by chunk z, then chunk x) and each chunk in slot order:
+//                   0  int z, x, y
+//                  12  int neighbour index for NORTH, SOUTH, EAST, WEST, below and above, -1 for none
+//                  36  int door key id, -1 for none
+//                  40  long wall flags: 16 bits per wall (SectorStore.W_*), wall w in bits 16w to 16w+15
+//                  48  double door opening time
+//                  56  short main texture per wall, adjoin texture per wall, floor, ceiling, door textures 1 and 2
+//                  80  byte sector flags (SectorStore.S_*), door flags (MapFile's D_* bits), door position, door type
+//                  84  byte floor offset per corner, ceiling offset per corner, then 2 bytes of padding
+//
+// texture and key ids index the name tables; textures are -1 where there's none
+// the export is streamed to a channel through one reusable direct buffer: a first pass over the map counts the
+// sectors in each chunk, which is enough to work out every sector's index, so the channel doesn't need to be
+// seekable. Besides the map, the export only holds a little per chunk (its index and a bitmap of its slots), and
+// nothing per sector. The map itself has to be whole, though: every sector's neighbours are looked up, across floors
+// too, so a map loaded lazily from a file has all of its floors decoded into it first, as for a full save, and keeps
+// them
+public final class MapExporter {
+    public static final String EXTENSION = "gmrt";
+
+    static final int MAGIC = 0x4D545247; // "GRTM"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final int SECTOR_SIZE = 96;
+
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    private static final int OCCUPANCY_WORDS = Floor.CHUNK_AREA / 64;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final ByteBuffer buf;
+
+    public MapExporter() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public MapExporter(int bufferSize) {
+        if (bufferSize < SECTOR_SIZE)
+            throw new IllegalArgumentException("Buffer must hold at least one sector record");
+        buf = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public void export(GameMap map, Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            export(map, ch);
+        }
+    }
+
+    // the channel is left open
+    public void export(GameMap map, WritableByteChannel out) throws IOException {
+        FloorIndex floors = map.floorIndex();
+        floors.loadAll();
+        Layout layout = new Layout(floors);
+        buf.clear();
+
+        TexturePalette palette = map.getPalette();
+        KeyRegistry keys = map.keyRegistry();
+        reserve(out, HEADER_SIZE).putInt(MAGIC).putShort(VERSION).putShort((short) 0)
+                .putInt(layout.numbers.length).putInt(layout.sectorCount)
+                .putInt(palette.size()).putInt(keys.idCount());
+        for (short id = 0; id < palette.size(); id++)
+            putString(out, palette.nameOf(id));
+        for (int id = 0; id < keys.idCount(); id++)
+            putString(out, keys.nameOf(id));
+
+        for (int i = 0; i < layout.numbers.length; i++) {
+            int first = layout.bases[i].length > 0 ? layout.bases[i][0] : layout.sectorCount;
+            reserve(out, 12).putInt(layout.numbers[i]).putInt(first).putInt(layout.counts[i]);
+        }
+
+        for (int i = 0; i < layout.numbers.length; i++) {
+            for (Chunk c : layout.chunks[i]) {
+                for (int slot = 0; slot < Floor.CHUNK_AREA; slot++) {
+                    Sector s = c.sectors[slot];
+                    if (s != null)
+                        putSector(reserve(out, SECTOR_SIZE), layout, s, c.store, slot);
+                }
+            }
+        }
+        flush(out);
+    }
+
+    private void putSector(ByteBuffer b, Layout layout, Sector s, SectorStore st, int slot) {
+        b.putInt(s.getZPos()).putInt(s.getXPos()).putInt(s.getYPos());
+        for (Direction d : DIRECTIONS)
+            b.putInt(layout.indexOf(s.getNeighbour(d)));
+        b.putInt(layout.indexOf(s.getNeighbourBelow()));
+        b.putInt(layout.indexOf(s.getNeighbourAbove()));
+
+        Door door = st.getDoor(slot);
+        b.putInt(door != null ? door.keyId : KeyRegistry.NO_KEY);
+        long walls = 0;
+        for (int wall = 0; wall < SectorStore.WALLS; wall++)
+            walls |= (st.getWallFlags(slot, wall) & 0xFFFFL) << (16 * wall);
+        b.putLong(walls);
+        b.putDouble(door != null ? door.openingTime : 0);
+
+        for (int wall = 0; wall < SectorStore.WALLS; wall++)
+            b.putShort(st.getMainTex(slot, wall));
+        for (int wall = 0; wall < SectorStore.WALLS; wall++)
+            b.putShort(st.getAdjTex(slot, wall));
+        b.putShort(st.getFloorTex(slot));
+        b.putShort(st.getCeilingTex(slot));
+        b.putShort(door != null ? door.texture1 : TexturePalette.NO_TEXTURE);
+        b.putShort(door != null ? door.texture2 : TexturePalette.NO_TEXTURE);
+
+        b.put(st.getSectorFlags(slot));
+        if (door != null) {
+            b.put(MapFile.doorFlags(door));
+            b.put((byte) door.doorPosition);
+            b.put((byte) door.type.ordinal());
+        }
+        else {
+            b.put((byte) 0).put((byte) 0).put((byte) 0);
+        }
+        for (int corner = 0; corner < SectorStore.CORNERS; corner++)
+            b.put((byte) st.getFloorOffset(slot, corner));
+        for (int corner = 0; corner < SectorStore.CORNERS; corner++)
+            b.put((byte) st.getCeilingOffset(slot, corner));
+        b.putShort((short) 0);
+    }
+
+    private void putString(WritableByteChannel out, String s) throws IOException {
+        if (s == null) {
+            reserve(out, 2).putShort((short) -1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE || bytes.length + 2 > buf.capacity())
+            throw new IOException("Name too long to export: " + s);
+        reserve(out, 2 + bytes.length).putShort((short) bytes.length).put(bytes);
+    }
+
+    // the buffer, with room for at least n more bytes
+    private ByteBuffer reserve(WritableByteChannel out, int n) throws IOException {
+        if (buf.remaining() < n)
+            flush(out);
+        return buf;
+    }
+
+    private void flush(WritableByteChannel out) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining())
+            out.write(buf);
+        buf.clear();
+    }
+
+    // where every chunk's sectors go in the export, from a pass over the map that only counts sectors
+    // a sector's index is its chunk's base index plus the number of occupied slots before it in the chunk
+    private static final class Layout {
+        final int[] numbers; // floor numbers of non-empty floors, ascending
+        final Chunk[][] chunks; // each floor's chunks, in export order
+        final long[][] keys; // chunk keys, ascending, matching chunks
+        final int[][] bases; // index of the first sector of each chunk
+        final long[][] occupied; // which slots of each chunk hold a sector, OCCUPANCY_WORDS words per chunk
+        final int[] counts; // sectors on each floor
+        final int sectorCount;
+
+        Layout(FloorIndex floors) {
+            ArrayList<Floor> used = new ArrayList<>();
+            int[] allNumbers = new int[floors.size()];
+            for (int i = 0; i < floors.size(); i++) {
+                Floor f = floors.peekAt(i);
+                if (!f.isEmpty()) {
+                    allNumbers[used.size()] = floors.numberAt(i);
+                    used.add(f);
+                }
+            }
+
+            numbers = Arrays.copyOf(allNumbers, used.size());
+            chunks = new Chunk[numbers.length][];
+            keys = new long[numbers.length][];
+            bases = new int[numbers.length][];
+            occupied = new long[numbers.length][];
+            counts = new int[numbers.length];
+
+            long next = 0;
+            for (int i = 0; i < numbers.length; i++) {
+                Floor f = used.get(i);
+                ArrayList<Chunk> list = new ArrayList<>(f.chunkCount());
+                f.forEachChunk(c -> {
+                    if (c.count > 0)
+                        list.add(c);
+                });
+                list.sort((a, b) -> a.chunkZ != b.chunkZ
+                        ? Integer.compare(a.chunkZ, b.chunkZ) : Integer.compare(a.chunkX, b.chunkX));
+
+                int n = list.size();
+                chunks[i] = list.toArray(new Chunk[0]);
+                keys[i] = new long[n];
+                bases[i] = new int[n];
+                occupied[i] = new long[n * OCCUPANCY_WORDS];
+                for (int j = 0; j < n; j++) {
+                    Chunk c = chunks[i][j];
+                    keys[i][j] = sortKey(c.chunkZ, c.chunkX);
+                    bases[i][j] = (int) next;
+                    for (int slot = 0; slot < Floor.CHUNK_AREA; slot++) {
+                        if (c.sectors[slot] != null)
+                            occupied[i][j * OCCUPANCY_WORDS + (slot >> 6)] |= 1L << slot;
+                    }
+                    next += c.count;
+                    counts[i] += c.count;
+                }
+            }
+            if (next > Integer.MAX_VALUE)
+                throw new IllegalStateException("Map has too many sectors to export");
+            sectorCount = (int) next;
+        }
+
+        // position of a sector in the export, or -1 for null
+        int indexOf(Sector s) {
+            if (s == null)
+                return -1;
+            int i = Arrays.binarySearch(numbers, s.getYPos());
+            int j = Arrays.binarySearch(keys[i], sortKey(s.getZPos() >> Floor.CHUNK_SHIFT,
+                    s.getXPos() >> Floor.CHUNK_SHIFT));
+            int slot = Floor.slot(s.getZPos(), s.getXPos());
+
+            long[] occ = occupied[i];
+            int first = j * OCCUPANCY_WORDS, word = slot >> 6;
+            int rank = Long.bitCount(occ[first + word] & ((1L << slot) - 1));
+            for (int w = 0; w < word; w++)
+                rank += Long.bitCount(occ[first + w]);
+            return bases[i][j] + rank;
+        }
+
+        // orders like chunk z, then chunk x, both signed
+        private static long sortKey(int chunkZ, int chunkX) {
+            return ((long) chunkZ << 32) | ((chunkX & 0xFFFFFFFFL) ^ 0x80000000L);
+        }
+    }
+}
@@ -0,0 +1,744 @@
+package aidan_garvey.mapeditor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.DoubleConsumer;
+
+// reads and writes maps in a compact binary format (all values little-endian)
+//
+//   header        HEADER_SIZE bytes: magic, version, flags, offset and length of the directory
+//   chunk data    for each chunk, its sectors as fixed-width records (RECORD_SIZE bytes), in slot order
+//   directory     texture string table, key table, then for each floor its number and chunk directory
+//                 (chunk position, offset and length of its data, number of sectors)
+//
+// the directory is written last, so the writer can stream chunks out without knowing their sizes in advance
+// saving to the file a map came from only appends the chunks that changed and a new directory, then updates the
+// directory offset in the header; the file is rewritten from scratch once enough superseded data has built up
+// texture and key ids in records are indices into the tables in the directory, which are the map's own palette and
+// key registry, so saving copies ids as they are and loading only has to translate them through a small table
+// loading maps the file into memory and, the first time each floor is used, decodes its chunks straight into chunk
+// stores without building any intermediate objects
+// chunks are encoded and decoded in parallel on a fork/join pool, then written out or given to the map in order
+// compressed files (.gmapz, F_COMPRESSED in the header) store each chunk's records packed by ChunkCodec instead, with
+// the texture table in the directory as the dictionary the records' texture ids refer to. Chunks are still packed
+// independently and listed in the directory, so floors are still decoded lazily and saves can still append.
+public final class MapFile {
+    public static final String EXTENSION = "gmap";
+    public static final String COMPRESSED_EXTENSION = "gmapz";
+
+    static final int MAGIC = 0x50414D47; // "GMAP"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 60;
+    static final int CHUNK_ENTRY_SIZE = 24;
+    // ints describing each chunk of a floor waiting to be decoded: chunk z, chunk x, offset, length and sector count
+    static final int CHUNK_INFO = 5;
+
+    // header flags
+    static final short F_COMPRESSED = 1;
+
+    // bits of a record's door flags byte
+    private static final int
+            D_PRESENT = 1,
+            D_FACING_NORTH_SOUTH = 1 << 1,
+            D_OPENS_VERTICAL = 1 << 2,
+            D_SHOOT_TO_OPEN = 1 << 3;
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 18;
+    // chunks given to one task when encoding or decoding them in parallel
+    private static final int CHUNKS_PER_TASK = 8;
+    // chunks encoded in parallel before being written out in order, which bounds the memory a save needs
+    private static final int ENCODE_BATCH = 256;
+    // superseded data allowed to build up in a file before a save rewrites it from scratch
+    private static final long COMPACT_SLACK = 1 << 20;
+    private static final DoorType[] DOOR_TYPES = DoorType.values();
+
+    private MapFile() {}
+
+    // ***** writing ***** //
+
+    // save the map, only appending what changed if the file is the one the map was loaded from or last saved to
+    // the map is compressed if the file name ends in .gmapz
+    public static void save(GameMap map, Path path) throws IOException {
+        Snapshot snap = snapshot(map, path, false);
+        write(snap, null);
+        commit(map, snap);
+    }
+
+    // always write the whole file, even if the map could be appended to it
+    static void saveAll(GameMap map, Path path) throws IOException {
+        Snapshot snap = snapshot(map, path, true);
+        write(snap, null);
+        commit(map, snap);
+    }
+
+    // everything a save needs, copied out of the map so it can be written on another thread while the map is edited
+    static final class Snapshot {
+        final Path path;
+        // append to the end of the file, rather than write a new one to a temporary file and move it into place
+        final boolean append;
+        final boolean compressed;
+        final long start; // where the chunk data will start
+        final String[] textures, keys; // the map's texture palette and key names by id
+        final int[] floorNumbers;
+        // chunk key, offset, length and sector count of each chunk on each floor, null for empty floors
+        final long[][] entries;
+        final ArrayList<ChunkCopy> copies; // chunks to write; their offsets in entries are filled in as they're written
+        long length; // length of the file once it's been written
+
+        private Snapshot(Path path, boolean append, boolean compressed, long start, String[] textures, String[] keys,
+                         int[] floorNumbers, long[][] entries, ArrayList<ChunkCopy> copies) {
+            this.path = path;
+            this.append = append;
+            this.compressed = compressed;
+            this.start = start;
+            this.textures = textures;
+            this.keys = keys;
+            this.floorNumbers = floorNumbers;
+            this.entries = entries;
+            this.copies = copies;
+        }
+
+        // number of bytes of sector records to be written
+        long recordBytes() {
+            long n = 0;
+            for (ChunkCopy c : copies)
+                n += (long) c.slots.length * RECORD_SIZE;
+            return n;
+        }
+    }
+
+    // a chunk that has to be written, with its data as of the snapshot
+    private static final class ChunkCopy {
+        final Chunk chunk;
+        final long version;
+        final SectorStore store;
+        final int[] slots; // occupied slots, ascending
+        final long[] entries; // the floor's directory entries, and where this chunk's are
+        final int entry;
+        long offset;
+        int length;
+
+        ChunkCopy(Chunk chunk, long[] entries, int entry) {
+            this.chunk = chunk;
+            this.entries = entries;
+            this.entry = entry;
+            version = chunk.store.version();
+            store = chunk.store.copy();
+            slots = new int[chunk.count];
+            for (int slot = 0, n = 0; slot < Floor.CHUNK_AREA; slot++) {
+                if (chunk.sectors[slot] != null)
+                    slots[n++] = slot;
+            }
+        }
+    }
+
+    // take a consistent copy of what needs saving, on the thread that edits the map
+    // only chunks that have to be written are copied, so for an incremental save this is cheap
+    static Snapshot snapshot(GameMap map, Path path, boolean forceFull) throws IOException {
+        path = path.toAbsolutePath().normalize();
+        boolean compressed = isCompressedName(path);
+        boolean append = !forceFull && canAppend(map, path, compressed);
+
+        FloorIndex floors = map.floorIndex();
+        int[] floorNumbers = new int[floors.size()];
+        long[][] entries = new long[floors.size()][];
+        ArrayList<ChunkCopy> copies = new ArrayList<>();
+
+        // a new file needs every floor's records, so floors still waiting in the old file are decoded. Nothing reads
+        // the old file after that, so its mapping is released here, before the new file is moved over it in write()
+        if (!append) {
+            floors.loadAll();
+            releaseMappedFile(map);
+        }
+        for (int i = 0; i < floors.size(); i++) {
+            Floor f = floors.peekAt(i);
+            floorNumbers[i] = floors.numberAt(i);
+
+            if (!f.isLoaded()) {
+                // the floor's records are still where they were in the file
+                int[] chunks = f.getPendingChunks();
+                long[] e = new long[chunks.length / CHUNK_INFO * 4];
+                for (int j = 0, k = 0; j < chunks.length; j += CHUNK_INFO) {
+                    e[k++] = Floor.chunkKey(chunks[j], chunks[j + 1]);
+                    e[k++] = chunks[j + 2];
+                    e[k++] = chunks[j + 3];
+                    e[k++] = chunks[j + 4];
+                }
+                entries[i] = e;
+                continue;
+            }
+            if (f.isEmpty())
+                continue;
+
+            long[] e = new long[f.chunkCount() * 4];
+            int[] n = {0};
+            f.forEachChunk(c -> {
+                int entry = n[0];
+                e[entry] = Floor.chunkKey(c.chunkZ, c.chunkX);
+                e[entry + 3] = c.count;
+                if (append && c.savedOffset >= 0 && !c.store.isModified()) {
+                    e[entry + 1] = c.savedOffset;
+                    e[entry + 2] = c.savedLength;
+                }
+                else {
+                    copies.add(new ChunkCopy(c, e, entry));
+                }
+                n[0] += 4;
+            });
+            entries[i] = e;
+        }
+
+        TexturePalette palette = map.getPalette();
+        String[] textures = new String[palette.size()];
+        for (short id = 0; id < textures.length; id++)
+            textures[id] = palette.nameOf(id);
+
+        KeyRegistry keyRegistry = map.keyRegistry();
+        String[] keys = new String[keyRegistry.idCount()];
+        for (int id = 0; id < keys.length; id++)
+            keys[id] = keyRegistry.nameOf(id); // null for deleted keys, so the remaining ids don't shift
+
+        return new Snapshot(path, append, compressed, append ? map.getSavedLength() : HEADER_SIZE, textures, keys,
+                floorNumbers, entries, copies);
+    }
+
+    static boolean isCompressedName(Path path) {
+        return path.getFileName().toString().endsWith("." + COMPRESSED_EXTENSION);
+    }
+
+    // appending is only safe if the file hasn't changed since the map last saw it and its chunks are stored the same
+    // way, and is only worth it while superseded chunks and directories take up less space than the live ones
+    private static boolean canAppend(GameMap map, Path path, boolean compressed) throws IOException {
+        if (!path.equals(map.getSavedFile()) || !Files.isRegularFile(path) || Files.size(path) != map.getSavedLength())
+            return false;
+        if (((readFlags(path) & F_COMPRESSED) != 0) != compressed)
+            return false;
+
+        long[] live = {HEADER_SIZE};
+        FloorIndex floors = map.floorIndex();
+        for (int i = 0; i < floors.size(); i++) {
+            Floor f = floors.peekAt(i);
+            if (f.isLoaded()) {
+                // chunks that haven't been saved yet are counted at their unpacked size
+                f.forEachChunk(c -> live[0] += c.savedOffset >= 0 ? c.savedLength : (long) c.count * RECORD_SIZE);
+            }
+            else {
+                int[] chunks = f.getPendingChunks();
+                for (int j = 0; j < chunks.length; j += CHUNK_INFO)
+                    live[0] += chunks[j + 3];
+            }
+        }
+        return map.getSavedLength() <= 2 * live[0] + COMPACT_SLACK;
+    }
+
+    private static short readFlags(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && ch.read(header) >= 0) { }
+            return header.position() == HEADER_SIZE && header.getInt(0) == MAGIC ? header.getShort(6) : -1;
+        }
+    }
+
+    // write a snapshot to disk; safe to call on any thread, as it doesn't touch the map
+    // progress (may be null) is given the fraction of the records written so far
+    // a new file is written next to the destination and moved into place, so a failed save never leaves a
+    // half-written map behind; the map's mapping of the old file was released by snapshot() first, since a mapped
+    // file can't be replaced on Windows. When appending, the chunk data and new directory are written after the end of the
+    // file and synced before the header is pointed at them, so the file is always either the old map or the new one.
+    static void write(Snapshot snap, DoubleConsumer progress) throws IOException {
+        Path target = snap.append ? snap.path : snap.path.resolveSibling(snap.path.getFileName() + ".tmp");
+        try (FileChannel ch = snap.append
+                ? FileChannel.open(target, StandardOpenOption.WRITE)
+                : FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer w = new Writer(ch, snap.start);
+
+            long total = snap.recordBytes(), done = 0;
+            int lastPercent = -1;
+            for (int from = 0; from < snap.copies.size(); from += ENCODE_BATCH) {
+                int to = Math.min(snap.copies.size(), from + ENCODE_BATCH);
+                byte[][] encoded = encode(snap, from, to);
+
+                for (int i = from; i < to; i++) {
+                    ChunkCopy c = snap.copies.get(i);
+                    byte[] data = encoded[i - from];
+                    c.offset = w.position;
+                    c.length = data.length;
+                    c.entries[c.entry + 1] = c.offset;
+                    c.entries[c.entry + 2] = c.length;
+                    w.write(data);
+
+                    done += (long) c.slots.length * RECORD_SIZE;
+                    int percent = (int) (done * 100 / total);
+                    if (progress != null && percent != lastPercent) {
+                        lastPercent = percent;
+                        progress.accept(percent / 100.0);
+                    }
+                }
+            }
+
+            long dirOffset = w.position;
+            writeDirectory(w, snap);
+            long dirLength = w.position - dirOffset;
+            w.flush();
+            // everything the new header points at has to be on disk before the header is
+            ch.force(false);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putShort(VERSION).putShort(snap.compressed ? F_COMPRESSED : 0)
+                    .putLong(dirOffset).putLong(dirLength);
+            header.clear();
+            ch.write(header, 0);
+            ch.force(false);
+            snap.length = w.position;
+        }
+
+        if (!snap.append)
+            Files.move(target, snap.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // once a snapshot has been written, record where its chunks are, on the thread that edits the map
+    // a chunk edited while it was being written stays modified, so the next save writes it again
+    static void commit(GameMap map, Snapshot snap) {
+        for (ChunkCopy c : snap.copies) {
+            c.chunk.savedOffset = c.offset;
+            c.chunk.savedLength = c.length;
+            c.chunk.store.markSaved(c.version);
+        }
+        map.setSavedFile(snap.path, snap.length);
+    }
+
+    // the data of the chunks copies[from, to) as they'll appear in the file, encoded in parallel on the fork/join
+    // pool this is called from (or the common pool)
+    private static byte[][] encode(Snapshot snap, int from, int to) {
+        byte[][] encoded = new byte[to - from][];
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int start = from; start < to; start += CHUNKS_PER_TASK) {
+            int first = start, end = Math.min(to, start + CHUNKS_PER_TASK);
+            tasks.add(ForkJoinTask.adapt(() -> {
+                try (ChunkCodec codec = snap.compressed ? new ChunkCodec() : null) {
+                    for (int i = first; i < end; i++) {
+                        ChunkCopy c = snap.copies.get(i);
+                        if (codec != null) {
+                            ByteBuffer records = codec.records();
+                            for (int slot : c.slots)
+                                writeRecord(records, c.store, slot);
+                            encoded[i - from] = Arrays.copyOf(codec.packed(), codec.pack(c.slots.length));
+                        }
+                        else {
+                            byte[] data = new byte[c.slots.length * RECORD_SIZE];
+                            ByteBuffer records = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+                            for (int slot : c.slots)
+                                writeRecord(records, c.store, slot);
+                            encoded[i - from] = data;
+                        }
+                    }
+                }
+            }));
+        }
+        ForkJoinTask.invokeAll(tasks);
+        return encoded;
+    }
+
+    // the door flags byte of a record (also used by MapExporter)
+    static byte doorFlags(Door d) {
+        int flags = D_PRESENT;
+        if (d.facingNorthSouth) flags |= D_FACING_NORTH_SOUTH;
+        if (d.opensVertical) flags |= D_OPENS_VERTICAL;
+        if (d.shootToOpen) flags |= D_SHOOT_TO_OPEN;
+        return (byte) flags;
+    }
+
+    // the record for one slot of a store, RECORD_SIZE bytes
+    static void writeRecord(ByteBuffer b, SectorStore st, int slot) {
+        b.putShort((short) slot);
+        for (int wall = 0; wall < SectorStore.WALLS; wall++)
+            b.putShort(st.getWallFlags(slot, wall));
+        for (int wall = 0; wall < SectorStore.WALLS; wall++)
+            b.putShort(st.getMainTex(slot, wall));
+        for (int wall = 0; wall < SectorStore.WALLS; wall++)
+            b.putShort(st.getAdjTex(slot, wall));
+        b.putShort(st.getFloorTex(slot));
+        b.putShort(st.getCeilingTex(slot));
+        b.put(st.getSectorFlags(slot));
+        for (int corner = 0; corner < SectorStore.CORNERS; corner++)
+            b.put((byte) st.getFloorOffset(slot, corner));
+        for (int corner = 0; corner < SectorStore.CORNERS; corner++)
+            b.put((byte) st.getCeilingOffset(slot, corner));
+
+        Door d = st.getDoor(slot);
+        if (d == null) {
+            // keep records fixed-width
+            for (int i = 0; i < RECORD_SIZE - 41; i++)
+                b.put((byte) 0);
+        }
+        else {
+            b.put(doorFlags(d));
+            b.put((byte) d.doorPosition);
+            b.put((byte) d.type.ordinal());
+            b.putDouble(d.openingTime);
+            b.putShort(d.texture1);
+            b.putShort(d.texture2);
+            b.putInt(d.keyId);
+        }
+    }
+
+    private static void writeDirectory(Writer w, Snapshot snap) throws IOException {
+        w.reserve(4).putInt(snap.textures.length);
+        for (String name : snap.textures)
+            writeString(w, name);
+
+        w.reserve(4).putInt(snap.keys.length);
+        for (String name : snap.keys)
+            writeString(w, name);
+
+        int written = 0;
+        for (long[] e : snap.entries) {
+            if (e != null)
+                ++written;
+        }
+        w.reserve(4).putInt(written);
+
+        for (int i = 0; i < snap.entries.length; i++) {
+            long[] e = snap.entries[i];
+            if (e == null)
+                continue;
+
+            w.reserve(8).putInt(snap.floorNumbers[i]).putInt(e.length / 4);
+            for (int j = 0; j < e.length; j += 4) {
+                w.reserve(CHUNK_ENTRY_SIZE)
+                        .putInt((int) (e[j] >> 32))
+                        .putInt((int) e[j])
+                        .putLong(e[j + 1])
+                        .putInt((int) e[j + 2])
+                        .putInt((int) e[j + 3]);
+            }
+        }
+    }
+
+    // length-prefixed UTF-8, length -1 for null
+    private static void writeString(Writer w, String s) throws IOException {
+        if (s == null) {
+            w.reserve(2).putShort((short) -1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE)
+            throw new IOException("Name too long to save: " + s);
+        w.reserve(2).putShort((short) bytes.length);
+        w.write(bytes);
+    }
+
+    // buffers writes to a channel, tracking the file position
+    private static final class Writer {
+        private final FileChannel ch;
+        private final ByteBuffer buf;
+        long position;
+
+        Writer(FileChannel ch, long start) throws IOException {
+            this.ch = ch;
+            buf = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            position = start;
+            ch.position(start);
+        }
+
+        // the buffer, with room for at least n more bytes
+        ByteBuffer reserve(int n) throws IOException {
+            if (buf.remaining() < n)
+                flush();
+            position += n;
+            return buf;
+        }
+
+        void write(byte[] bytes) throws IOException {
+            for (int off = 0; off < bytes.length; ) {
+                int n = Math.min(bytes.length - off, WRITE_BUFFER_SIZE);
+                reserve(n).put(bytes, off, n);
+                off += n;
+            }
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining())
+                ch.write(buf);
+            buf.clear();
+        }
+    }
+
+    // ***** reading ***** //
+
+    // unmap the file the map was loaded from; every floor must have been decoded, as nothing may read it afterwards
+    private static void releaseMappedFile(GameMap map) {
+        MappedByteBuffer mapped = map.getMappedFile();
+        if (mapped != null) {
+            map.setMappedFile(null);
+            unmap(mapped);
+        }
+    }
+
+    // a mapping is otherwise only released when the buffer is garbage collected, and until then Windows won't let the
+    // file be replaced. If the JDK doesn't allow it, that's reported and it's left to the collector
+    private static void unmap(MappedByteBuffer buf) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buf);
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            System.err.println("ERROR: Could not release map file: " + e);
+        }
+    }
+
+    // only the header and directory are read here; each floor is decoded from the mapped file the first time it's
+    // used (see FloorIndex), so opening a map costs roughly the same however many floors it has
+    public static GameMap load(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE)
+                throw new IOException("Map file is too large: " + path);
+
+            // the mapping stays valid after the channel is closed, until a full save decodes every floor and releases
+            // it (see snapshot)
+            MappedByteBuffer mapped = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            GameMap map = open(mapped);
+            map.setSavedFile(path.toAbsolutePath().normalize(), ch.size());
+            map.setMappedFile(mapped);
+            return map;
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Map file is corrupt: " + path, e);
+        }
+    }
+
+    private static GameMap open(ByteBuffer buf) throws IOException {
+        if (buf.getInt(0) != MAGIC)
+            throw new IOException("Not a map file");
+        if (buf.getShort(4) != VERSION)
+            throw new IOException("Unsupported map file version " + buf.getShort(4));
+        boolean compressed = (buf.getShort(6) & F_COMPRESSED) != 0;
+
+        GameMap map = new GameMap(false);
+        ByteBuffer dir = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        dir.position((int) buf.getLong(8));
+
+        // the file's texture and key ids, translated to ids in the new map
+        // both have to come out the same as in the file, since an incremental save keeps the records of chunks that
+        // weren't edited as they are, texture and key ids and all
+        TexturePalette palette = map.getPalette();
+        short[] textures = new short[dir.getInt()];
+        for (int i = 0; i < textures.length; i++) {
+            String name = readString(dir);
+            textures[i] = palette.idOf(name);
+            if (textures[i] != i)
+                throw new IOException("Texture " + name + " is out of place in the directory");
+        }
+
+        KeyRegistry keyRegistry = map.keyRegistry();
+        int[] keys = new int[dir.getInt()];
+        for (int i = 0; i < keys.length; i++) {
+            String name = readString(dir);
+            keys[i] = name == null ? keyRegistry.addDeleted() : keyRegistry.idOf(name);
+            if (keys[i] != i)
+                throw new IOException("Key " + name + " appears twice in the directory");
+        }
+
+        FloorIndex floors = map.floorIndex();
+        int floorCount = dir.getInt();
+        for (int i = 0; i < floorCount; i++) {
+            int y = dir.getInt();
+            int[] chunks = new int[dir.getInt() * CHUNK_INFO];
+            for (int j = 0; j < chunks.length; j += CHUNK_INFO) {
+                chunks[j] = dir.getInt();
+                chunks[j + 1] = dir.getInt();
+                long offset = dir.getLong();
+                int length = dir.getInt();
+                int count = dir.getInt();
+                // check the directory up front, so a bad file is reported when it's opened rather than later on
+                if (count < 0 || count > Floor.CHUNK_AREA || (compressed ? length < 0 : length != count * RECORD_SIZE)
+                        || offset < HEADER_SIZE || offset + length > buf.limit())
+                    throw new IOException("Bad chunk directory entry for floor " + y);
+                chunks[j + 2] = (int) offset;
+                chunks[j + 3] = length;
+                chunks[j + 4] = count;
+            }
+
+            if (floors.peek(y) != null)
+                throw new IOException("Floor " + y + " appears twice in the directory");
+            Floor f = floors.getOrCreate(y, palette);
+            FloorLoad load = new FloorLoad(buf, compressed, map, f, y, chunks, textures, keys);
+            f.setPendingLoad(chunks, load::decode, load::register);
+        }
+
+        return map;
+    }
+
+    // decodes one floor from the mapped file
+    // decode() fills the floor's chunk stores and makes its sectors, splitting the chunks into tasks that run in
+    // parallel; it only touches the floor itself, so several floors can be decoded at once. register() then places the
+    // sectors in the floor and gives them to the map, one at a time on the thread that edits the map.
+    private static final class FloorLoad {
+        private final ByteBuffer buf;
+        private final boolean compressed;
+        private final GameMap map;
+        private final Floor f;
+        private final int y;
+        private final int[] chunks;
+        private final short[] textures;
+        private final int[] keys;
+        private Chunk[] decoded;
+        private Sector[][] sectors; // the sectors of each decoded chunk, in slot order
+
+        FloorLoad(ByteBuffer buf, boolean compressed, GameMap map, Floor f, int y, int[] chunks, short[] textures,
+                  int[] keys) {
+            this.buf = buf;
+            this.compressed = compressed;
+            this.map = map;
+            this.f = f;
+            this.y = y;
+            this.chunks = chunks;
+            this.textures = textures;
+            this.keys = keys;
+        }
+
+        void decode() {
+            int n = chunks.length / CHUNK_INFO;
+            decoded = new Chunk[n];
+            sectors = new Sector[n][];
+            for (int k = 0; k < n; k++)
+                decoded[k] = f.getOrCreateChunk(chunks[k * CHUNK_INFO], chunks[k * CHUNK_INFO + 1]);
+
+            ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (int from = 0; from < n; from += CHUNKS_PER_TASK) {
+                int start = from, end = Math.min(n, from + CHUNKS_PER_TASK);
+                tasks.add(ForkJoinTask.adapt(() -> decodeRange(start, end)));
+            }
+            if (tasks.size() == 1)
+                tasks.get(0).invoke();
+            else
+                ForkJoinTask.invokeAll(tasks);
+        }
+
+        // each sector is only placed in the floor as it's registered, so the neighbours it links to always have
+        // handles and regions already
+        void register() {
+            for (int k = 0; k < decoded.length; k++) {
+                for (Sector s : sectors[k]) {
+                    f.putLoaded(decoded[k], Floor.slot(s.getZPos(), s.getXPos()), s);
+                    map.registerLoaded(s);
+                }
+            }
+            decoded = null;
+            sectors = null;
+        }
+
+        private void decodeRange(int from, int to) {
+            try (ChunkCodec codec = compressed ? new ChunkCodec() : null) {
+                for (int k = from; k < to; k++) {
+                    int j = k * CHUNK_INFO;
+                    int offset = chunks[j + 2], length = chunks[j + 3], count = chunks[j + 4];
+                    Chunk c = decoded[k];
+                    sectors[k] = codec != null
+                            ? decodeChunk(codec.unpack(buf, offset, length, count), 0, count, c, y, textures, keys)
+                            : decodeChunk(buf, offset, count, c, y, textures, keys);
+                    // what was just decoded is exactly what's in the file
+                    c.savedOffset = offset;
+                    c.savedLength = length;
+                    c.store.markSaved(c.store.version());
+                    c.store.clearTouched();
+                }
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            catch (IndexOutOfBoundsException e) {
+                throw new UncheckedIOException(new IOException("Map file is corrupt", e));
+            }
+        }
+    }
+
+    // fill the chunk's store from count records at offset, returning sectors for them
+    private static Sector[] decodeChunk(ByteBuffer buf, int offset, int count, Chunk c, int y, short[] textures,
+                                       int[] keys) throws IOException {
+        SectorStore st = c.store;
+        int baseZ = c.chunkZ << Floor.CHUNK_SHIFT, baseX = c.chunkX << Floor.CHUNK_SHIFT;
+        Sector[] sectors = new Sector[count];
+        long[] seen = new long[Floor.CHUNK_AREA / 64];
+
+        for (int r = 0; r < count; r++) {
+            int p = offset + r * RECORD_SIZE;
+            int slot = buf.getShort(p);
+            if (slot < 0 || slot >= Floor.CHUNK_AREA || (seen[slot >> 6] & 1L << slot) != 0)
+                throw new IOException("Bad sector record at " + p);
+            seen[slot >> 6] |= 1L << slot;
+
+            readRecord(buf, p, st, slot, textures, keys);
+            sectors[r] = new Sector(baseZ | (slot & Floor.CHUNK_MASK), baseX | (slot >> Floor.CHUNK_SHIFT), y, st, slot);
+        }
+        return sectors;
+    }
+
+    // fill a slot of a store from the record at position p, translating texture and key ids through the given tables
+    // every field is written, so this can also overwrite a sector that already has data
+    static void readRecord(ByteBuffer buf, int p, SectorStore st, int slot, short[] textures, int[] keys) {
+        for (int wall = 0; wall < SectorStore.WALLS; wall++) {
+            st.setWallFlags(slot, wall, buf.getShort(p + 2 + wall * 2));
+            st.setMainTex(slot, wall, texture(textures, buf.getShort(p + 10 + wall * 2)));
+            st.setAdjTex(slot, wall, texture(textures, buf.getShort(p + 18 + wall * 2)));
+        }
+        st.setFloorTex(slot, texture(textures, buf.getShort(p + 26)));
+        st.setCeilingTex(slot, texture(textures, buf.getShort(p + 28)));
+        st.setSectorFlags(slot, buf.get(p + 30));
+        for (int corner = 0; corner < SectorStore.CORNERS; corner++) {
+            st.setFloorOffset(slot, corner, buf.get(p + 31 + corner));
+            st.setCeilingOffset(slot, corner, buf.get(p + 36 + corner));
+        }
+
+        int doorFlags = buf.get(p + 41);
+        if ((doorFlags & D_PRESENT) == 0) {
+            st.setDoor(slot, null);
+        }
+        else {
+            int key = buf.getInt(p + 56);
+            st.setDoor(slot, new Door(
+                    (doorFlags & D_FACING_NORTH_SOUTH) != 0,
+                    buf.get(p + 42),
+                    (doorFlags & D_OPENS_VERTICAL) != 0,
+                    DOOR_TYPES[buf.get(p + 43)],
+                    buf.getDouble(p + 44),
+                    (doorFlags & D_SHOOT_TO_OPEN) != 0,
+                    texture(textures, buf.getShort(p + 52)),
+                    texture(textures, buf.getShort(p + 54)),
+                    key == KeyRegistry.NO_KEY ? KeyRegistry.NO_KEY : keys[key]));
+        }
+    }
+
+    private static short texture(short[] textures, short fileId) {
+        return fileId == TexturePalette.NO_TEXTURE ? TexturePalette.NO_TEXTURE : textures[fileId];
+    }
+
+    static String readString(ByteBuffer buf) {
+        int length = buf.getShort();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
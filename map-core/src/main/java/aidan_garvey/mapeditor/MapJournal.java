@@ -0,0 +1,592 @@
+package aidan_garvey.mapeditor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// write-ahead journal of the edits made to a map since it was last saved, kept in a file next to the map
+// (<map file>.journal) so the edits can be recovered if the editor crashes
+//
+// edits aren't recorded call by call: every write to a sector store marks the slot as touched, and every
+// COMMIT_INTERVAL_MS the journal collects the current data of each touched sector (as a MapFile record), along with
+// sectors removed, textures replaced and changes to texture and key names, into one batch. The batch is appended and
+// synced on a background thread, so a burst of edits costs one write and one fsync, and a sector edited many times
+// in between is only recorded once.
+//
+// file layout (little-endian): a header (magic, version, length of the map file the journal applies to), then
+// batches of records, each framed by its length and CRC32 so a batch torn by a crash is ignored when replaying.
+// The first batch is a baseline of every texture and key name by id, so the records can be replayed on a map whose
+// ids are different. On save, the journal is started again from the saved file (see beginSave and finishSave).
+public class MapJournal {
+    public static final String SUFFIX = ".journal";
+
+    static final int MAGIC = 0x4C4E524A; // "JRNL"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int FRAME_HEADER_SIZE = 8;
+    static final long COMMIT_INTERVAL_MS = 200;
+
+    // record types
+    private static final byte
+            TEXTURE = 1, // short id, name: the name of a texture id, new or changed
+            KEY = 2, // int id, name (null once the key is deleted)
+            BEGIN = 3, // end of the baseline, later TEXTURE and KEY records are changes
+            SECTOR = 4, // int y, int z, int x, MapFile record: the data of a sector, which may be new
+            REMOVE = 5, // int y, int z, int x
+            REPLACE = 6, // old name, new name: GameMap.replaceTexture
+            MARK = 7; // a save snapshot was taken here
+
+    private final GameMap map;
+    private final Executor callbacks;
+    private final ScheduledExecutorService io; // writes batches in order, one at a time
+
+    // only used on the io thread once the journal is running
+    private Path path;
+    private FileChannel channel;
+    private long markPosition; // end of the batch holding the last MARK
+
+    // only used on the map thread
+    private String[] textures; // texture names by id, as recorded so far
+    private int textureCount;
+    private final ArrayList<String> keys; // key names by id, as recorded so far
+    private Batch pending; // records of events, which are recorded as they happen
+    private int recovered; // number of records replayed from a previous session's journal
+    private boolean closed;
+
+    private MapJournal(GameMap map, Executor callbacks, String[] baseTextures, String[] baseKeys) {
+        this.map = map;
+        this.callbacks = callbacks;
+        textures = Arrays.copyOf(baseTextures, Math.max(16, baseTextures.length));
+        textureCount = baseTextures.length;
+        keys = new ArrayList<>(Arrays.asList(baseKeys));
+        pending = new Batch();
+        io = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "map-journal");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static Path pathFor(Path mapFile) {
+        return mapFile.resolveSibling(mapFile.getFileName() + SUFFIX);
+    }
+
+    // start a new journal for a map that was just loaded from mapFile, replacing any journal already there
+    public static MapJournal create(GameMap map, Path mapFile, Executor callbacks) throws IOException {
+        // the map is the same as the file, so nothing written so far needs recording
+        FloorIndex floors = map.floorIndex();
+        for (int i = 0; i < floors.size(); i++) {
+            if (floors.isLoaded(i))
+                floors.peekAt(i).forEachChunk(c -> c.store.clearTouched());
+        }
+        return createAfterSave(map, mapFile, callbacks);
+    }
+
+    // start a journal for a map that has just been saved to mapFile for the first time
+    // sectors edited since the map was created are recorded in the first batch, in case they changed after the save's
+    // snapshot was taken
+    public static MapJournal createAfterSave(GameMap map, Path mapFile, Executor callbacks) throws IOException {
+        MapJournal j = new MapJournal(map, callbacks, textureNames(map), keyNames(map));
+        j.start(pathFor(mapFile), Files.size(mapFile), j.baseline(), null);
+        return j;
+    }
+
+    // replay the journal left next to mapFile by a previous session onto a map that was just loaded from mapFile,
+    // then start journaling the map, with the recovered edits carried over into the new journal
+    public static MapJournal recover(GameMap map, Path mapFile, Executor callbacks) throws IOException {
+        Path journalPath = pathFor(mapFile);
+        ByteBuffer old = ByteBuffer.wrap(Files.readAllBytes(journalPath)).order(ByteOrder.LITTLE_ENDIAN);
+
+        // the new journal's baseline is the map as loaded, and replaying records the recovered edits in it
+        MapJournal j = new MapJournal(map, callbacks, textureNames(map), keyNames(map));
+        Batch base = j.baseline();
+        map.setJournal(j);
+        try {
+            if (appliesTo(old, Files.size(mapFile)))
+                j.recovered = replay(map, old);
+            j.start(journalPath, Files.size(mapFile), base, j.takeBatch());
+        }
+        catch (IOException e) {
+            map.setJournal(null);
+            j.io.shutdown();
+            throw e;
+        }
+        return j;
+    }
+
+    // does mapFile have a journal with edits that haven't been saved?
+    public static boolean hasEdits(Path mapFile) {
+        Path journalPath = pathFor(mapFile);
+        try {
+            if (!Files.isRegularFile(journalPath))
+                return false;
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(journalPath)).order(ByteOrder.LITTLE_ENDIAN);
+            // the first batch is the baseline, anything after it is an edit
+            return appliesTo(buf, Files.size(mapFile)) && countFrames(buf) > 1;
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    public int getRecoveredCount() {
+        return recovered;
+    }
+
+    // ***** recording, on the map thread ***** //
+
+    void sectorRemoved(int z, int x, int y) {
+        syncNames(pending);
+        pending.position(y, z, x, REMOVE);
+    }
+
+    void textureReplaced(String oldName, String newName) {
+        // the names as they were before the replacement come first
+        syncNames(pending);
+        pending.put(REPLACE).putString(oldName).putString(newName);
+    }
+
+    // gather everything edited since the last collect into a batch and queue it to be written
+    public void collect() {
+        if (closed)
+            return;
+        Batch b = takeBatch();
+        if (b.size() > 0)
+            io.execute(() -> append(b));
+    }
+
+    // collect, and wait until everything collected so far is on disk
+    public void sync() {
+        collect();
+        try {
+            io.submit(() -> {}).get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // called right after a save snapshot is taken: everything up to here is in the snapshot
+    void beginSave() {
+        if (closed)
+            return;
+        Batch b = takeBatch();
+        b.put(MARK);
+        io.execute(() -> {
+            append(b);
+            try {
+                markPosition = channel.position();
+            }
+            catch (IOException e) {
+                System.err.println("ERROR: Could not write edit journal: " + e.getMessage());
+            }
+        });
+    }
+
+    // called once the save has been committed: the journal starts again from the saved file, keeping only what was
+    // recorded after the snapshot
+    void finishSave(MapFile.Snapshot snap) {
+        if (closed)
+            return;
+        Batch base = baseline(snap.textures, snap.keys.clone());
+        io.execute(() -> {
+            try {
+                channel.force(false);
+                ByteBuffer tail = ByteBuffer.allocate((int) (channel.size() - markPosition));
+                channel.read(tail, markPosition);
+                tail.flip();
+
+                Path old = path;
+                channel.close();
+                channel = null;
+                writeNew(pathFor(snap.path), snap.length, base, tail);
+                if (!old.equals(path))
+                    Files.deleteIfExists(old);
+            }
+            catch (IOException e) {
+                System.err.println("ERROR: Could not restart edit journal: " + e.getMessage());
+            }
+        });
+    }
+
+    // record anything still pending and stop, leaving the journal to be recovered from (e.g. after a crash)
+    public void close() {
+        close(false);
+    }
+
+    // stop and delete the journal, for when the edits that weren't saved are thrown away on purpose (e.g. the map is
+    // closed without saving), so they aren't offered back the next time the map is opened
+    public void discard() {
+        close(true);
+    }
+
+    private void close(boolean discard) {
+        if (closed)
+            return;
+        if (!discard)
+            collect();
+        closed = true;
+        map.setJournal(null);
+        io.execute(() -> {
+            try {
+                if (channel != null)
+                    channel.close();
+                if (discard && path != null)
+                    Files.deleteIfExists(path);
+            }
+            catch (IOException e) {
+                System.err.println("ERROR: Could not close edit journal: " + e.getMessage());
+            }
+        });
+        io.shutdown();
+        try {
+            io.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Batch takeBatch() {
+        Batch b = pending;
+        pending = new Batch();
+        syncNames(b);
+
+        // the current data of every sector written since the last batch
+        FloorIndex floors = map.floorIndex();
+        for (int i = 0; i < floors.size(); i++) {
+            Floor f = floors.peekAt(i);
+            if (!f.isLoaded())
+                continue;
+
+            int y = floors.numberAt(i);
+            f.forEachChunk(c -> {
+                SectorStore st = c.store;
+                if (!st.hasTouched())
+                    return;
+                for (int slot = st.nextTouched(0); slot >= 0; slot = st.nextTouched(slot + 1)) {
+                    Sector s = c.sectors[slot];
+                    if (s != null) {
+                        b.position(y, s.getZPos(), s.getXPos(), SECTOR);
+                        MapFile.writeRecord(b.reserve(MapFile.RECORD_SIZE), st, slot);
+                    }
+                }
+                st.clearTouched();
+            });
+        }
+        return b;
+    }
+
+    // record texture and key names that have been added or changed
+    private void syncNames(Batch b) {
+        TexturePalette palette = map.getPalette();
+        int n = palette.size();
+        if (n > textures.length)
+            textures = Arrays.copyOf(textures, Math.max(n, textures.length * 2));
+        for (short id = 0; id < n; id++) {
+            String name = palette.nameOf(id);
+            if (id >= textureCount || !name.equals(textures[id])) {
+                b.put(TEXTURE).putShort(id).putString(name);
+                textures[id] = name;
+            }
+        }
+        textureCount = n;
+
+        KeyRegistry registry = map.keyRegistry();
+        for (int id = 0; id < registry.idCount(); id++) {
+            String name = registry.nameOf(id);
+            if (id >= keys.size() || !Objects.equals(name, keys.get(id))) {
+                b.put(KEY).putInt(id).putString(name);
+                if (id >= keys.size())
+                    keys.add(name);
+                else
+                    keys.set(id, name);
+            }
+        }
+    }
+
+    private Batch baseline() {
+        return baseline(Arrays.copyOf(textures, textureCount), keys.toArray(new String[0]));
+    }
+
+    private static Batch baseline(String[] textures, String[] keys) {
+        Batch b = new Batch();
+        for (short id = 0; id < textures.length; id++)
+            b.put(TEXTURE).putShort(id).putString(textures[id]);
+        for (int id = 0; id < keys.length; id++)
+            b.put(KEY).putInt(id).putString(keys[id]);
+        b.put(BEGIN);
+        return b;
+    }
+
+    private static String[] textureNames(GameMap map) {
+        TexturePalette palette = map.getPalette();
+        String[] names = new String[palette.size()];
+        for (short id = 0; id < names.length; id++)
+            names[id] = palette.nameOf(id);
+        return names;
+    }
+
+    private static String[] keyNames(GameMap map) {
+        KeyRegistry registry = map.keyRegistry();
+        String[] names = new String[registry.idCount()];
+        for (int id = 0; id < names.length; id++)
+            names[id] = registry.nameOf(id);
+        return names;
+    }
+
+    // ***** writing, on the io thread ***** //
+
+    // write a new journal to a temporary file and move it into place, then start appending to it
+    private void start(Path journalPath, long mapLength, Batch base, Batch edits) throws IOException {
+        writeNew(journalPath, mapLength, base, edits == null ? null : edits.frame());
+        map.setJournal(this);
+        io.scheduleWithFixedDelay(() -> callbacks.execute(this::collect), COMMIT_INTERVAL_MS, COMMIT_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    // tail holds whole frames to copy after the baseline, or is null
+    private void writeNew(Path journalPath, long mapLength, Batch base, ByteBuffer tail) throws IOException {
+        Path tmp = journalPath.resolveSibling(journalPath.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putLong(mapLength);
+            header.flip();
+            writeFully(ch, header);
+            writeFully(ch, base.frame());
+            if (tail != null)
+                writeFully(ch, tail);
+            ch.force(false);
+        }
+        Files.move(tmp, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        path = journalPath;
+        channel = FileChannel.open(journalPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+
+    private void append(Batch b) {
+        try {
+            if (channel == null)
+                return;
+            writeFully(channel, b.frame());
+            channel.force(false);
+        }
+        catch (IOException e) {
+            System.err.println("ERROR: Could not write edit journal: " + e.getMessage());
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining())
+            ch.write(buf);
+    }
+
+    // ***** replaying ***** //
+
+    private static boolean appliesTo(ByteBuffer buf, long mapLength) {
+        return buf.limit() >= HEADER_SIZE && buf.getInt(0) == MAGIC && buf.getShort(4) == VERSION
+                && buf.getLong(8) == mapLength;
+    }
+
+    // number of intact frames, stopping at the first torn or corrupt one
+    private static int countFrames(ByteBuffer buf) {
+        int frames = 0;
+        for (int pos = HEADER_SIZE; frameLength(buf, pos) >= 0; pos += FRAME_HEADER_SIZE + frameLength(buf, pos))
+            ++frames;
+        return frames;
+    }
+
+    // length of the frame at pos, or -1 if there isn't an intact one
+    private static int frameLength(ByteBuffer buf, int pos) {
+        if (pos + FRAME_HEADER_SIZE > buf.limit())
+            return -1;
+        int length = buf.getInt(pos);
+        if (length < 0 || length > buf.limit() - pos - FRAME_HEADER_SIZE)
+            return -1;
+
+        CRC32 crc = new CRC32();
+        crc.update(buf.slice(pos + FRAME_HEADER_SIZE, length));
+        return (int) crc.getValue() == buf.getInt(pos + 4) ? length : -1;
+    }
+
+    // apply every intact record to the map, returning the number of edits applied
+    private static int replay(GameMap map, ByteBuffer buf) throws IOException {
+        TexturePalette palette = map.getPalette();
+        KeyRegistry registry = map.keyRegistry();
+
+        // journal ids, translated to ids in the map, with the name each journal id had last
+        short[] texMap = new short[16];
+        String[] texNames = new String[16];
+        int[] keyMap = new int[16];
+        String[] keyNames = new String[16];
+        boolean baseline = true;
+        int applied = 0;
+
+        try {
+            for (int pos = HEADER_SIZE, length; (length = frameLength(buf, pos)) >= 0;
+                 pos += FRAME_HEADER_SIZE + length) {
+                ByteBuffer r = buf.slice(pos + FRAME_HEADER_SIZE, length).order(ByteOrder.LITTLE_ENDIAN);
+                while (r.hasRemaining()) {
+                    byte type = r.get();
+                    switch (type) {
+                        case TEXTURE -> {
+                            short id = r.getShort();
+                            String name = MapFile.readString(r);
+                            if (id >= texMap.length) {
+                                texMap = Arrays.copyOf(texMap, Math.max(id + 1, texMap.length * 2));
+                                texNames = Arrays.copyOf(texNames, texMap.length);
+                            }
+                            // a changed name renames the texture everywhere it was used, as it did when edited
+                            if (!baseline && texNames[id] != null && !texNames[id].equals(name))
+                                map.replaceTexture(texNames[id], name);
+                            texNames[id] = name;
+                            texMap[id] = palette.idOf(name);
+                        }
+                        case KEY -> {
+                            int id = r.getInt();
+                            String name = MapFile.readString(r);
+                            if (id >= keyMap.length) {
+                                keyMap = Arrays.copyOf(keyMap, Math.max(id + 1, keyMap.length * 2));
+                                keyNames = Arrays.copyOf(keyNames, keyMap.length);
+                            }
+                            String old = keyNames[id];
+                            if (!baseline && old != null && name == null)
+                                map.deleteKey(old);
+                            else if (!baseline && old != null && !old.equals(name))
+                                map.renameKey(old, name);
+                            keyNames[id] = name;
+                            keyMap[id] = name == null ? KeyRegistry.NO_KEY : registry.idOf(name);
+                        }
+                        case BEGIN -> baseline = false;
+                        case SECTOR -> {
+                            int y = r.getInt(), z = r.getInt(), x = r.getInt();
+                            applySector(map, y, z, x, r, r.position(), texMap, keyMap);
+                            r.position(r.position() + MapFile.RECORD_SIZE);
+                        }
+                        case REMOVE -> {
+                            int y = r.getInt(), z = r.getInt(), x = r.getInt();
+                            map.removeSector(z, x, y);
+                        }
+                        case REPLACE -> map.replaceTexture(MapFile.readString(r), MapFile.readString(r));
+                        case MARK -> { }
+                        default -> throw new IOException("Unknown journal record type " + type);
+                    }
+                    if (!baseline && type != BEGIN && type != MARK)
+                        ++applied;
+                }
+            }
+        }
+        catch (RuntimeException e) {
+            throw new IOException("Edit journal is corrupt", e);
+        }
+        return applied;
+    }
+
+    // overwrite the sector at a position with a record, or create it if there isn't one
+    // an existing sector is overwritten in place, so its neighbours keep their adjoins to it
+    private static void applySector(GameMap map, int y, int z, int x, ByteBuffer r, int p, short[] texMap,
+                                    int[] keyMap) throws IOException {
+        Floor f = map.floorIndex().getOrCreate(y, map.getPalette());
+        if (!f.isLoaded())
+            throw new IOException("Floor " + y + " of the map could not be loaded");
+        Chunk c = f.getOrCreateChunk(z >> Floor.CHUNK_SHIFT, x >> Floor.CHUNK_SHIFT);
+        int slot = Floor.slot(z, x);
+
+        Sector s = c.sectors[slot];
+        if (s != null) {
+            int oldKey = s.getDoorKeyId();
+            MapFile.readRecord(r, p, c.store, slot, texMap, keyMap);
+            map.dataReplaced(s, oldKey);
+        }
+        else {
+            MapFile.readRecord(r, p, c.store, slot, texMap, keyMap);
+            s = new Sector(z, x, y, c.store, slot);
+            f.putLoaded(c, slot, s);
+            map.registerLoaded(s);
+        }
+    }
+
+    // ***** batches ***** //
+
+    // a growable buffer of records, written out as one frame
+    private static final class Batch {
+        private ByteBuffer buf = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+
+        int size() {
+            return buf.position();
+        }
+
+        ByteBuffer reserve(int n) {
+            if (buf.remaining() < n) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + n))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                buf.flip();
+                bigger.put(buf);
+                buf = bigger;
+            }
+            return buf;
+        }
+
+        Batch put(byte b) {
+            reserve(1).put(b);
+            return this;
+        }
+
+        Batch putShort(short s) {
+            reserve(2).putShort(s);
+            return this;
+        }
+
+        Batch putInt(int i) {
+            reserve(4).putInt(i);
+            return this;
+        }
+
+        // length-prefixed UTF-8, length -1 for null
+        Batch putString(String s) {
+            if (s == null)
+                return putShort((short) -1);
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            putShort((short) bytes.length);
+            reserve(bytes.length).put(bytes);
+            return this;
+        }
+
+        void position(int y, int z, int x, byte type) {
+            reserve(13).put(type).putInt(y).putInt(z).putInt(x);
+        }
+
+        // the records with their length and checksum in front
+        ByteBuffer frame() {
+            int length = buf.position();
+            CRC32 crc = new CRC32();
+            crc.update(buf.array(), 0, length);
+
+            ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + length).order(ByteOrder.LITTLE_ENDIAN);
+            frame.putInt(length).putInt((int) crc.getValue());
+            frame.put(buf.array(), 0, length);
+            frame.flip();
+            return frame;
+        }
+    }
+}
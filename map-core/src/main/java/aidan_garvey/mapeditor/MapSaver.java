@@ -0,0 +1,134 @@
+package aidan_garvey.mapeditor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+// saves maps without blocking the thread that edits them
+// save() takes a snapshot of the map (see MapFile.Snapshot) on the calling thread, which only copies the chunks that
+// need writing, then writes and syncs the file on a background thread. Progress and the result are passed back
+// through the callback executor (e.g. Platform::runLater), which must run tasks on the thread that edits the map.
+// If the map has a journal (see MapJournal), it's marked when the snapshot is taken and started again from the saved
+// file once the save is committed.
+// Saves run one at a time: a save requested while another is being written starts once that one has finished, since
+// an incremental save depends on where the previous one left the file. Only the latest save requested meanwhile is
+// kept; one it replaces is answered by it if it saves the same map to the same file, or told it was replaced if not.
+public class MapSaver {
+    private final Executor callbacks;
+    private final ExecutorService writer;
+
+    private boolean busy;
+    private Runnable queued; // the latest save requested while busy
+    private GameMap queuedMap;
+    private Path queuedPath;
+    private Consumer<IOException> queuedDone;
+
+    public MapSaver(Executor callbacks) {
+        this.callbacks = callbacks;
+        writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "map-saver");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // progress is given the fraction of the map written so far; done is given null if the save worked, or the
+    // exception if it didn't. Both are called through the callback executor.
+    public void save(GameMap map, Path path, DoubleConsumer progress, Consumer<IOException> done) {
+        save(map, path, null, progress, done);
+    }
+
+    // journal may be null
+    public void save(GameMap map, Path path, MapJournal journal, DoubleConsumer progress,
+                     Consumer<IOException> done) {
+        if (busy) {
+            Consumer<IOException> answer = done;
+            if (queued != null) {
+                Consumer<IOException> replaced = queuedDone;
+                if (map == queuedMap && path.equals(queuedPath)) {
+                    // the new save writes everything the replaced one would have
+                    answer = e -> {
+                        replaced.accept(e);
+                        done.accept(e);
+                    };
+                }
+                else {
+                    replaced.accept(new IOException("The save to " + queuedPath.getFileName()
+                            + " was replaced by a later save"));
+                }
+            }
+            Consumer<IOException> answerAll = answer;
+            queued = () -> save(map, path, journal, progress, answerAll);
+            queuedMap = map;
+            queuedPath = path;
+            queuedDone = answerAll;
+            return;
+        }
+
+        MapFile.Snapshot snap;
+        try {
+            snap = MapFile.snapshot(map, path, false);
+        }
+        catch (IOException e) {
+            done.accept(e);
+            return;
+        }
+        if (journal != null)
+            journal.beginSave();
+
+        busy = true;
+        writer.execute(() -> {
+            IOException error = null;
+            try {
+                MapFile.write(snap, fraction -> callbacks.execute(() -> progress.accept(fraction)));
+            }
+            catch (IOException e) {
+                error = e;
+            }
+            // a bug in writing still has to end the save, or every later save would wait behind it forever
+            catch (RuntimeException e) {
+                error = new IOException("Could not write " + path.getFileName() + ": " + e, e);
+            }
+
+            IOException result = error;
+            callbacks.execute(() -> {
+                if (result == null) {
+                    MapFile.commit(map, snap);
+                    if (journal != null)
+                        journal.finishSave(snap);
+                }
+                busy = false;
+                done.accept(result);
+
+                if (queued != null) {
+                    Runnable next = queued;
+                    queued = null;
+                    queuedMap = null;
+                    queuedPath = null;
+                    queuedDone = null;
+                    next.run();
+                }
+            });
+        });
+    }
+
+    public boolean isSaving() {
+        return busy;
+    }
+
+    // let a save that's being written finish (e.g. before the application exits)
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package aidan_garvey.mapeditor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+
+// command-line tool for checking and converting many map files at once, without starting the editor
+//
+//   java -cp <classes> aidan_garvey.mapeditor.MapTool <command> [options] <map files...>
+//
+//   validate                  decode every floor and check that adjoins and door keys are consistent
+//   convert --to gmap|gmapz   save each map again in the given format
+//   export                    write each map in the game's format (see MapExporter)
+//
+//   --out <dir>               where converted and exported maps go (default: next to each map)
+//   --jobs <n>                maps worked on at once (default: 2 per processor)
+//   --decode-threads <n>      threads decoding and encoding chunks, shared by every map (default: one per processor)
+//
+// each map gets a task of its own on a pool of --jobs threads, which mostly wait on the disk; the CPU-heavy decoding
+// and encoding of chunks runs on one fork/join pool shared by every map, so the number of busy threads stays bounded
+// however many maps are given. Exits with 1 if any map failed, 2 if the arguments were wrong.
+public final class MapTool {
+    private static final int MAX_PROBLEMS_SHOWN = 20;
+
+    private final String command;
+    private final String format; // for convert: the extension to convert to
+    private final Path outDir; // null for next to each map
+    private final ForkJoinPool decodePool;
+    private final ThreadLocal<MapExporter> exporters = ThreadLocal.withInitial(MapExporter::new);
+
+    private MapTool(String command, String format, Path outDir, int decodeThreads) {
+        this.command = command;
+        this.format = format;
+        this.outDir = outDir;
+        decodePool = new ForkJoinPool(decodeThreads);
+    }
+
+    public static void main(String[] args) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        String command = null, format = null;
+        Path outDir = null;
+        int jobs = 2 * processors, decodeThreads = processors;
+        List<Path> files = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--to" -> format = args[++i];
+                    case "--out" -> outDir = Paths.get(args[++i]);
+                    case "--jobs" -> jobs = Integer.parseInt(args[++i]);
+                    case "--decode-threads" -> decodeThreads = Integer.parseInt(args[++i]);
+                    default -> {
+                        if (args[i].startsWith("--"))
+                            throw new IllegalArgumentException("Unknown option " + args[i]);
+                        if (command == null)
+                            command = args[i];
+                        else
+                            files.add(Paths.get(args[i]));
+                    }
+                }
+            }
+            if (command == null || files.isEmpty())
+                throw new IllegalArgumentException("No command or no map files given");
+            if (!List.of("validate", "convert", "export").contains(command))
+                throw new IllegalArgumentException("Unknown command " + command);
+            if (command.equals("convert")
+                    && !MapFile.EXTENSION.equals(format) && !MapFile.COMPRESSED_EXTENSION.equals(format))
+                throw new IllegalArgumentException("convert needs --to " + MapFile.EXTENSION + " or --to "
+                        + MapFile.COMPRESSED_EXTENSION);
+            if (jobs < 1 || decodeThreads < 1)
+                throw new IllegalArgumentException("Thread counts must be at least 1");
+            if (outDir != null)
+                Files.createDirectories(outDir);
+        }
+        catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | IOException e) {
+            System.err.println("ERROR: " + (e instanceof ArrayIndexOutOfBoundsException
+                    ? "Missing value for " + args[args.length - 1] : e.getMessage()));
+            System.err.println("usage: MapTool validate|convert|export [--to gmap|gmapz] [--out dir] [--jobs n] "
+                    + "[--decode-threads n] <map files...>");
+            System.exit(2);
+            return;
+        }
+
+        MapTool tool = new MapTool(command, format, outDir, decodeThreads);
+        System.exit(tool.run(files, jobs) ? 0 : 1);
+    }
+
+    // process every file, printing a line (or more, for problems found) per file as it finishes
+    // returns whether every file succeeded
+    private boolean run(List<Path> files, int jobs) {
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(jobs, files.size()));
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (Path file : files)
+            results.add(pool.submit(() -> process(file)));
+
+        int failed = 0;
+        for (Future<Boolean> result : results) {
+            try {
+                if (!result.get())
+                    ++failed;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            catch (ExecutionException e) {
+                ++failed;
+                e.getCause().printStackTrace();
+            }
+        }
+        pool.shutdown();
+        decodePool.shutdown();
+
+        System.out.printf("%d maps, %d failed, %.1f s%n", files.size(), failed, (System.nanoTime() - start) / 1e9);
+        return failed == 0;
+    }
+
+    private boolean process(Path file) {
+        try {
+            GameMap map = MapFile.load(file);
+            inDecodePool(() -> {
+                map.floorIndex().loadAll();
+                return null;
+            });
+
+            String detail;
+            switch (command) {
+                case "validate" -> {
+                    List<String> problems = validate(map);
+                    if (!problems.isEmpty()) {
+                        report(file, "INVALID", problems);
+                        return false;
+                    }
+                    detail = countSectors(map) + " sectors";
+                }
+                case "convert" -> {
+                    Path out = output(file, format);
+                    inDecodePool(() -> {
+                        MapFile.saveAll(map, out);
+                        return null;
+                    });
+                    detail = "-> " + out;
+                }
+                default -> {
+                    Path out = output(file, MapExporter.EXTENSION);
+                    exporters.get().export(map, out);
+                    detail = "-> " + out;
+                }
+            }
+            System.out.println("OK " + file + " " + detail);
+            return true;
+        }
+        catch (IOException | UncheckedIOException e) {
+            System.out.println("FAILED " + file + ": " + (e instanceof UncheckedIOException
+                    ? e.getCause().getMessage() : e.getMessage()));
+            return false;
+        }
+    }
+
+    // run a task on the shared decode pool, so the chunk work in MapFile is spread over its threads
+    private <T> T inDecodePool(Callable<T> task) throws IOException {
+        try {
+            return decodePool.invoke(ForkJoinTask.adapt(task));
+        }
+        catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException io)
+                throw io;
+            throw e;
+        }
+    }
+
+    private Path output(Path file, String extension) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        name = (dot > 0 ? name.substring(0, dot) : name) + "." + extension;
+        return outDir != null ? outDir.resolve(name) : file.resolveSibling(name);
+    }
+
+    private static void report(Path file, String status, List<String> problems) {
+        StringBuilder sb = new StringBuilder(status + " " + file + ": " + problems.size() + " problems");
+        for (int i = 0; i < Math.min(problems.size(), MAX_PROBLEMS_SHOWN); i++)
+            sb.append(System.lineSeparator()).append("    ").append(problems.get(i));
+        if (problems.size() > MAX_PROBLEMS_SHOWN)
+            sb.append(System.lineSeparator()).append("    ...");
+        // one println per file, so lines from maps finishing at the same time don't interleave
+        System.out.println(sb);
+    }
+
+    private static long countSectors(GameMap map) {
+        long n = 0;
+        for (int i = 0; i < map.getFloorCount(); i++)
+            n += map.getFloor(map.getFloorNumber(i)).size();
+        return n;
+    }
+
+    // the things the editor keeps consistent while editing: adjoins are made on both sides of a wall, floor or
+    // ceiling, a ceiling is never both adjoined and a sky, and doors are only locked with keys that exist
+    static List<String> validate(GameMap map) {
+        List<String> problems = new ArrayList<>();
+        KeyRegistry keys = map.keyRegistry();
+        FloorIndex floors = map.floorIndex();
+
+        for (int i = 0; i < floors.size(); i++) {
+            floors.floorAt(i).forEachChunk(c -> {
+                for (Sector s : c.sectors) {
+                    if (s == null)
+                        continue;
+                    String at = "sector (" + s.getZPos() + ", " + s.getXPos() + ", " + s.getYPos() + "): ";
+
+                    for (Direction d : Direction.values()) {
+                        if (!s.getWallAdjoin(d))
+                            continue;
+                        Sector n = s.getNeighbour(d);
+                        if (n == null)
+                            problems.add(at + d + " wall is adjoined but has no sector behind it");
+                        else if (!n.getWallAdjoin(Direction.oppositeDirection(d)))
+                            problems.add(at + d + " wall is adjoined but the sector behind it isn't adjoined back");
+                    }
+
+                    if (s.getFloorAdjoin()) {
+                        Sector below = s.getNeighbourBelow();
+                        if (below == null || !below.getCeilingAdjoin())
+                            problems.add(at + "floor is adjoined but the ceiling below isn't");
+                    }
+                    if (s.getCeilingAdjoin()) {
+                        Sector above = s.getNeighbourAbove();
+                        if (above == null || !above.getFloorAdjoin())
+                            problems.add(at + "ceiling is adjoined but the floor above isn't");
+                        if (s.getSky())
+                            problems.add(at + "ceiling is both adjoined and a sky");
+                    }
+
+                    if (s.hasDoor()) {
+                        int key = s.getDoorKeyId();
+                        if (key != KeyRegistry.NO_KEY && (key < 0 || key >= keys.idCount() || keys.nameOf(key) == null))
+                            problems.add(at + "door is locked with a key that doesn't exist");
+                    }
+                }
+            });
+        }
+        return problems;
+    }
+}
@@ -0,0 +1,196 @@
+package aidan_garvey.mapeditor;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// groups the sectors of a map into regions ("rooms"): sets of sectors connected through adjoined walls, floors and
+// ceilings
+// regions are kept in a union-find structure over sector table slots, with each region's members also linked in a
+// circular list so they can be listed without searching. Adjoining two sectors merges their regions immediately;
+// un-adjoining or removing a sector may split a region, so the region is only marked dirty and rebuilt from its
+// sectors' adjoins the next time it's needed.
+class RegionIndex {
+    private static final int FREE = -1;
+
+    private final SectorTable table;
+
+    // indexed by sector table slot
+    private int[] parent; // union-find parent, FREE if the slot has no sector
+    private int[] size; // number of members, only meaningful for roots
+    private int[] next, prev; // circular list of the members of each region
+    private boolean[] dirty; // only meaningful for roots: region may have split since it was last built
+
+    private int[] dirtyRoots; // roots waiting to be rebuilt
+    private int dirtyCount;
+
+    RegionIndex(SectorTable table) {
+        this.table = table;
+        parent = new int[0];
+        size = new int[0];
+        next = new int[0];
+        prev = new int[0];
+        dirty = new boolean[0];
+        dirtyRoots = new int[16];
+        dirtyCount = 0;
+    }
+
+    // called before the sector table hands out slot i to a new sector: a slot from a removed sector stays in its
+    // region's member list until the region is rebuilt, so only that region is rebuilt now. Other dirty regions wait
+    // until they're asked about, so adding a sector doesn't cost more after a remove somewhere else
+    void prepareSlot(int i) {
+        if (i < parent.length && parent[i] != FREE)
+            rebuild(find(i));
+    }
+
+    // a new sector starts out in a region of its own
+    // prepareSlot must be called before the sector is given its handle
+    void add(Sector s) {
+        int i = SectorTable.indexOf(s.getHandle());
+        ensureCapacity(i + 1);
+        makeSingleton(i);
+    }
+
+    // the sector's slot stays in its region's member list until the region is rebuilt
+    void remove(Sector s) {
+        int i = SectorTable.indexOf(s.getHandle());
+        markDirty(find(i));
+    }
+
+    // called when two sectors are adjoined
+    void join(Sector a, Sector b) {
+        union(SectorTable.indexOf(a.getHandle()), SectorTable.indexOf(b.getHandle()));
+    }
+
+    // called when an adjoin of this sector is removed
+    void split(Sector s) {
+        markDirty(find(SectorTable.indexOf(s.getHandle())));
+    }
+
+    // id of the region containing the sector; ids stay the same until the map is next edited
+    int regionOf(Sector s) {
+        rebuildDirty();
+        return find(SectorTable.indexOf(s.getHandle()));
+    }
+
+    int regionSize(int region) {
+        rebuildDirty();
+        return size[region];
+    }
+
+    void forEachInRegion(int region, Consumer<Sector> action) {
+        rebuildDirty();
+        int i = region;
+        do {
+            action.accept(table.getByIndex(i));
+            i = next[i];
+        } while (i != region);
+    }
+
+    private int find(int i) {
+        // path halving
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private void union(int a, int b) {
+        int ra = find(a), rb = find(b);
+        if (ra == rb)
+            return;
+
+        // attach the smaller region under the larger one
+        if (size[ra] < size[rb]) {
+            int t = ra;
+            ra = rb;
+            rb = t;
+        }
+        parent[rb] = ra;
+        size[ra] += size[rb];
+
+        // splice the two circular member lists together
+        int raNext = next[ra], rbNext = next[rb];
+        next[ra] = rbNext;
+        prev[rbNext] = ra;
+        next[rb] = raNext;
+        prev[raNext] = rb;
+
+        if (dirty[rb])
+            markDirty(ra);
+    }
+
+    private void makeSingleton(int i) {
+        parent[i] = i;
+        size[i] = 1;
+        next[i] = prev[i] = i;
+        dirty[i] = false;
+    }
+
+    private void markDirty(int root) {
+        if (dirty[root])
+            return;
+
+        dirty[root] = true;
+        if (dirtyCount == dirtyRoots.length)
+            dirtyRoots = Arrays.copyOf(dirtyRoots, dirtyCount * 2);
+        dirtyRoots[dirtyCount++] = root;
+    }
+
+    private void rebuildDirty() {
+        while (dirtyCount > 0) {
+            int root = dirtyRoots[--dirtyCount];
+            // a region marked dirty may since have been merged into another one, which was marked dirty too
+            if (parent[root] == root && dirty[root])
+                rebuild(root);
+        }
+    }
+
+    // split a region back into singletons, then re-join the members along their current adjoins
+    private void rebuild(int root) {
+        int[] members = new int[size[root]];
+        int n = 0;
+        int i = root;
+        do {
+            members[n++] = i;
+            i = next[i];
+        } while (i != root);
+
+        for (int k = 0; k < n; k++) {
+            int m = members[k];
+            if (table.getByIndex(m) == null)
+                parent[m] = FREE; // sector was removed
+            else
+                makeSingleton(m);
+        }
+
+        for (int k = 0; k < n; k++) {
+            Sector s = table.getByIndex(members[k]);
+            if (s == null)
+                continue;
+
+            for (Direction d : Direction.values()) {
+                if (s.getWallAdjoin(d) && s.getNeighbour(d) != null)
+                    join(s, s.getNeighbour(d));
+            }
+            if (s.getCeilingAdjoin() && s.getNeighbourAbove() != null)
+                join(s, s.getNeighbourAbove());
+            if (s.getFloorAdjoin() && s.getNeighbourBelow() != null)
+                join(s, s.getNeighbourBelow());
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= parent.length)
+            return;
+
+        int newLength = Math.max(n, parent.length * 2);
+        int oldLength = parent.length;
+        parent = Arrays.copyOf(parent, newLength);
+        Arrays.fill(parent, oldLength, newLength, FREE);
+        size = Arrays.copyOf(size, newLength);
+        next = Arrays.copyOf(next, newLength);
+        prev = Arrays.copyOf(prev, newLength);
+        dirty = Arrays.copyOf(dirty, newLength);
+    }
+}
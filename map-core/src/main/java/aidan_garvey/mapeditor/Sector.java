@@ -0,0 +1,412 @@
+package aidan_garvey.mapeditor;
+
+public class Sector {
+    private static final String TEX_DEFAULT = TexturePalette.DEFAULT_NAME;
+
+    // the store holding this sector's data, and which of its slots belongs to this sector
+    private SectorStore store;
+    private int slot;
+
+    private final int zPos, xPos, yPos;
+
+    // handle into the map's sector table, NO_HANDLE while the sector isn't in a map
+    private int handle;
+
+    // adjacent sectors in the map (null where there is none), kept up to date by GameMap as sectors are added and
+    // removed, so walking to a neighbour doesn't need a lookup
+    private Sector north, south, east, west, above, below;
+
+    // default sector
+    public Sector (int z, int x, int y) {
+        // until the sector is placed in a floor, it keeps its data in a store and palette of its own
+        // a new store holds nothing but defaults, and allocates nothing more until the sector is edited
+        store = new SectorStore(1, TexturePalette.detached());
+        slot = 0;
+
+        zPos = z;
+        xPos = x;
+        yPos = y;
+
+        handle = SectorTable.NO_HANDLE;
+    }
+
+    // a sector whose data is already in a slot of the given store (e.g. one just read from a map file)
+    Sector(int z, int x, int y, SectorStore store, int slot) {
+        this.store = store;
+        this.slot = slot;
+
+        zPos = z;
+        xPos = x;
+        yPos = y;
+
+        handle = SectorTable.NO_HANDLE;
+    }
+
+    // move this sector's data into a slot of another store (e.g. when it's placed in a floor's chunk)
+    void moveTo(SectorStore dst, int dstSlot) {
+        if (dst == store && dstSlot == slot)
+            return;
+
+        dst.copyFrom(store, slot, dstSlot);
+        store.clear(slot);
+        store = dst;
+        slot = dstSlot;
+    }
+
+    // give this sector a private copy of its data again (e.g. when it's removed from a floor)
+    void detach() {
+        moveTo(new SectorStore(1, TexturePalette.detached()), 0);
+    }
+
+    // stable id of this sector within its map, see GameMap.getSector(int)
+    public int getHandle() {
+        return handle;
+    }
+
+    void setHandle(int h) {
+        handle = h;
+    }
+
+    public Sector getNeighbour(Direction which) {
+        return switch (which) {
+            case NORTH -> north;
+            case SOUTH -> south;
+            case EAST -> east;
+            case WEST -> west;
+        };
+    }
+
+    public Sector getNeighbourAbove() {
+        return above;
+    }
+
+    public Sector getNeighbourBelow() {
+        return below;
+    }
+
+    void setNeighbour(Direction which, Sector s) {
+        switch (which) {
+            case NORTH -> north = s;
+            case SOUTH -> south = s;
+            case EAST -> east = s;
+            case WEST -> west = s;
+        }
+    }
+
+    void setNeighbourAbove(Sector s) {
+        above = s;
+    }
+
+    void setNeighbourBelow(Sector s) {
+        below = s;
+    }
+
+    public int getZPos() {
+        return zPos;
+    }
+
+    public int getXPos() {
+        return xPos;
+    }
+
+    public int getYPos() {
+        return yPos;
+    }
+
+    public void setWallAdjoin(Direction whichWall, boolean val) {
+        store.setWallFlag(slot, whichWall, SectorStore.W_ADJOIN, val);
+    }
+
+    public boolean getWallAdjoin(Direction whichWall) {
+        return store.getWallFlag(slot, whichWall, SectorStore.W_ADJOIN);
+    }
+
+    public void setWallBlocksMovement(Direction whichWall, boolean val) {
+        store.setWallFlag(slot, whichWall, SectorStore.W_BLOCKS_MOVEMENT, val);
+    }
+
+    public boolean getWallBlocksMovement(Direction which) {
+        return store.getWallFlag(slot, which, SectorStore.W_BLOCKS_MOVEMENT);
+    }
+
+    public void setWallBlocksProjectiles(Direction which, boolean val) {
+        store.setWallFlag(slot, which, SectorStore.W_BLOCKS_PROJECTILES, val);
+    }
+
+    public boolean getWallBlocksProjectiles(Direction which) {
+        return store.getWallFlag(slot, which, SectorStore.W_BLOCKS_PROJECTILES);
+    }
+
+    public void setAlignToFloor(Direction which, boolean val) { store.setWallFlag(slot, which, SectorStore.W_ALIGN_FLOOR, val); }
+
+    public boolean getAlignToFloor(Direction which) { return store.getWallFlag(slot, which, SectorStore.W_ALIGN_FLOOR); }
+
+    public void setAdjAlignToFloor(Direction which, boolean val) {
+        store.setWallFlag(slot, which, SectorStore.W_ADJ_ALIGN_FLOOR, val);
+    }
+
+    public boolean getAdjAlignToFloor(Direction which) { return store.getWallFlag(slot, which, SectorStore.W_ADJ_ALIGN_FLOOR); }
+
+    public void setMainHFlip(Direction which, boolean val) {
+        store.setWallFlag(slot, which, SectorStore.W_H_FLIP, val);
+    }
+
+    public boolean getMainHFlip(Direction which) {
+        return store.getWallFlag(slot, which, SectorStore.W_H_FLIP);
+    }
+
+    public void setMainVFlip(Direction which, boolean val) {
+        store.setWallFlag(slot, which, SectorStore.W_V_FLIP, val);
+    }
+
+    public boolean getMainVFlip(Direction which) {
+        return store.getWallFlag(slot, which, SectorStore.W_V_FLIP);
+    }
+
+    public void setAdjHFlip(Direction which, boolean val) {
+        store.setWallFlag(slot, which, SectorStore.W_ADJ_H_FLIP, val);
+    }
+
+    public boolean getAdjHFlip(Direction which) {
+        return store.getWallFlag(slot, which, SectorStore.W_ADJ_H_FLIP);
+    }
+
+    public void setAdjVFlip(Direction which, boolean val) {
+        store.setWallFlag(slot, which, SectorStore.W_ADJ_V_FLIP, val);
+    }
+
+    public boolean getAdjVFlip(Direction which) {
+        return store.getWallFlag(slot, which, SectorStore.W_ADJ_V_FLIP);
+    }
+
+    public boolean isFloorFlush() {
+        return store.isFloorFlush(slot);
+    }
+
+    public boolean isCeilingFlush() {
+        return store.isCeilingFlush(slot);
+    }
+
+    public void setFloorAdjoin(boolean val) {
+        store.setSectorFlag(slot, SectorStore.S_FLOOR_ADJOIN, val);
+    }
+
+    public boolean getFloorAdjoin() {
+        return store.getSectorFlag(slot, SectorStore.S_FLOOR_ADJOIN);
+    }
+
+    public void setCeilingAdjoin(boolean val) {
+        store.setSectorFlag(slot, SectorStore.S_CEILING_ADJOIN, val);
+    }
+
+    public boolean getCeilingAdjoin() {
+        return store.getSectorFlag(slot, SectorStore.S_CEILING_ADJOIN);
+    }
+
+    public void setSky(boolean val) {
+        store.setSectorFlag(slot, SectorStore.S_SKY, val);
+    }
+
+    public boolean getSky() {
+        return store.getSectorFlag(slot, SectorStore.S_SKY);
+    }
+
+    public void setMainTexture(Direction which, String texName) {
+        store.setMainTex(slot, which.ordinal(), store.palette.idOf(texName));
+    }
+
+    public String getMainTexture(Direction which) {
+        return store.palette.nameOf(getMainTextureId(which));
+    }
+
+    // texture id in this sector's palette; ids from the same map can be compared directly
+    public short getMainTextureId(Direction which) {
+        return store.getMainTex(slot, which.ordinal());
+    }
+
+    public void setAdjTexture(Direction which, String texName) {
+        store.setAdjTex(slot, which.ordinal(), store.palette.idOf(texName));
+    }
+
+    public String getAdjTexture(Direction which) { return store.palette.nameOf(getAdjTextureId(which)); }
+
+    public short getAdjTextureId(Direction which) { return store.getAdjTex(slot, which.ordinal()); }
+
+    // true if both sectors use the same palette, so their texture ids can be compared without looking up names
+    public boolean sharesPalette(Sector other) {
+        return store.palette == other.store.palette;
+    }
+
+    public void setFloorTexture(String texName) { store.setFloorTex(slot, store.palette.idOf(texName)); }
+
+    public String getFloorTexture() {return store.palette.nameOf(store.getFloorTex(slot));}
+
+    public void setCeilingTexture(String texName) { store.setCeilingTex(slot, store.palette.idOf(texName)); }
+
+    public String getCeilingTexture() {return store.palette.nameOf(store.getCeilingTex(slot));}
+
+    public void addDoor(boolean northSouth, boolean vertical) {
+        store.setDoor(slot, new Door(northSouth, 1, vertical, DoorType.UP_LEFT, 0.5, false,
+                TexturePalette.DEFAULT_ID, TexturePalette.DEFAULT_ID, KeyRegistry.NO_KEY));
+    }
+
+    public void removeDoor() {
+        store.setDoor(slot, null);
+    }
+
+    public boolean hasDoor() {
+        return store.getDoor(slot) != null;
+    }
+
+    public void setDoorNorthSouth(boolean northSouth) {
+        Door door = store.editDoor(slot);
+        if (door != null)
+            door.facingNorthSouth = northSouth;
+    }
+
+    public boolean doorIsNorthSouth() {
+        Door door = store.getDoor(slot);
+        return door == null || door.facingNorthSouth;
+    }
+
+    public void setDoorPos(int p) {
+        Door door = store.editDoor(slot);
+        if (door != null)
+            door.doorPosition = p;
+    }
+
+    public int getDoorPos() {
+        Door door = store.getDoor(slot);
+        if (door == null)
+            return 0;
+        else
+            return door.doorPosition;
+    }
+
+    public void setDoorVertical(boolean v) {
+        Door door = store.editDoor(slot);
+        if (door != null)
+            door.opensVertical = v;
+    }
+
+    public boolean doorIsVertical() {
+        Door door = store.getDoor(slot);
+        return door == null || door.opensVertical;
+    }
+
+    public void setDoorType(DoorType t) {
+        Door door = store.editDoor(slot);
+        if (door != null)
+            door.type = t;
+    }
+
+    public DoorType getDoorType() {
+        Door door = store.getDoor(slot);
+        return door == null ? DoorType.UP_LEFT : door.type;
+    }
+
+    public void setDoorSpeed(double s) {
+        Door door = store.editDoor(slot);
+        if (door != null) {
+            door.openingTime = Math.max(0, s);
+        }
+    }
+
+    public double getDoorSpeed() {
+        Door door = store.getDoor(slot);
+        return door == null ? 0.0 : door.openingTime;
+    }
+
+    public void setDoorShootToOpen(boolean s) {
+        Door door = store.editDoor(slot);
+        if (door != null) door.shootToOpen = true;
+    }
+
+    public boolean getDoorShootToOpen() {
+        Door door = store.getDoor(slot);
+        return door != null && door.shootToOpen;
+    }
+
+    public void setDoorTexture1(String s) {
+        Door door = store.editDoor(slot);
+        if (door != null)
+            door.texture1 = store.palette.idOf(s);
+    }
+
+    public String getDoorTexture1() {
+        Door door = store.getDoor(slot);
+        return door == null ? null : store.palette.nameOf(door.texture1);
+    }
+
+    public void setDoorTexture2(String s) {
+        Door door = store.editDoor(slot);
+        if (door != null)
+            door.texture2 = store.palette.idOf(s);
+    }
+
+    public String getDoorTexture2() {
+        Door door = store.getDoor(slot);
+        return door == null ? null : store.palette.nameOf(door.texture2);
+    }
+
+    // key ids belong to the map's KeyRegistry, so keys are set through GameMap.setDoorKey
+    void setDoorKeyId(int id) {
+        Door door = store.editDoor(slot);
+        if (door != null)
+            door.keyId = id;
+    }
+
+    int getDoorKeyId() {
+        Door door = store.getDoor(slot);
+        return door == null ? KeyRegistry.NO_KEY : door.keyId;
+    }
+
+    // offsets are stored packed, so these return copies; use the setters to apply changes
+    public int[] getCeilingOffsets() {
+        int[] offsets = new int[SectorStore.CORNERS];
+        for (int c = 0; c < SectorStore.CORNERS; c++)
+            offsets[c] = store.getCeilingOffset(slot, c);
+        return offsets;
+    }
+
+    public int[] getFloorOffsets() {
+        int[] offsets = new int[SectorStore.CORNERS];
+        for (int c = 0; c < SectorStore.CORNERS; c++)
+            offsets[c] = store.getFloorOffset(slot, c);
+        return offsets;
+    }
+
+    public void setCeilingOffsets(int[] offsets) {
+        for (int c = 0; c < SectorStore.CORNERS; c++)
+            store.setCeilingOffset(slot, c, offsets[c]);
+    }
+
+    public void setFloorOffsets(int[] offsets) {
+        for (int c = 0; c < SectorStore.CORNERS; c++)
+            store.setFloorOffset(slot, c, offsets[c]);
+    }
+}
+
+class Door {
+    boolean facingNorthSouth; // is the door facing north/south or east/west
+    int doorPosition; // 0 = left/top wall, 1 = middle of sector, 2 = right/bottom wall
+    boolean opensVertical; // which way does the door open?
+    DoorType type; // door can open (depending on v/h): up/left, down/right, in the middle
+    double openingTime; // time in seconds for door to open
+    boolean shootToOpen; // can the door be opened by shooting it
+    short texture1, texture2; // texture ids in the palette of the store holding the door
+    int keyId; // id in the map's KeyRegistry
+
+
+    Door (boolean fns, int doorPos, boolean vert, DoorType t, double openTime, boolean shootOpen, short tex1, short tex2, int key) {
+        facingNorthSouth = fns;
+        doorPosition = doorPos;
+        opensVertical = vert;
+        type = t;
+        openingTime = openTime;
+        shootToOpen = shootOpen;
+        texture1 = tex1;
+        texture2 = tex2;
+        keyId = key;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,371 @@
+package aidan_garvey.mapeditor;
+
+import java.util.Arrays;
+
+// compact backing storage for a block of sectors, kept as parallel primitive arrays instead of per-sector objects
+// each floor chunk owns one store with a slot for every position in the chunk; sectors that aren't in a map yet
+// own a single-slot store of their own
+// Sector objects are views onto one slot of a store
+// textures are stored as ids into the store's palette
+//
+// most sectors are never changed from the defaults, so every array starts out null, meaning "every slot has the
+// default value". An array is only allocated (copy-on-write) the first time a slot is given a non-default value.
+class SectorStore {
+    static final int WALLS = 4; // one entry per Direction, indexed by ordinal
+    static final int CORNERS = 5; // one entry per Corner, indexed by Corner.index
+
+    // wall flags, packed into one short per wall
+    static final short
+            W_ADJOIN = 1, // are the two sectors on either side of this wall connected?
+            W_ALIGN_FLOOR = 1 << 1, // is the texture drawn bottom-up from the floor, or top-down from the ceiling?
+            W_ADJ_ALIGN_FLOOR = 1 << 2, // alignFloor option for adjoin texture
+            W_BLOCKS_MOVEMENT = 1 << 3, // can this wall be walked through
+            W_BLOCKS_PROJECTILES = 1 << 4, // can this wall be shot through
+            W_H_FLIP = 1 << 5, // texture and adjoin texture is flipped horizontally or vertically
+            W_V_FLIP = 1 << 6,
+            W_ADJ_H_FLIP = 1 << 7,
+            W_ADJ_V_FLIP = 1 << 8;
+
+    // sector flags, one byte per sector
+    static final byte
+            S_FLOOR_ADJOIN = 1, // is the sector connected vertically through the floor/ceiling?
+            S_CEILING_ADJOIN = 1 << 1,
+            S_SKY = 1 << 2;
+
+    final int capacity;
+    final TexturePalette palette;
+
+    // null until a slot gets a non-default value
+    private short[] wallFlags; // WALLS per slot
+    private short[] mainTex; // id of the wall texture, WALLS per slot
+    private short[] adjTex; // id of wall texture shown when adjoined sector has different floor/ceiling height
+    private short[] floorTex, ceilingTex;
+    private byte[] sectorFlags;
+    // height offsets for each corner of the floor and ceiling, CORNERS per slot
+    // corner order (see Corner.java): North-East, South-East, South-West, North-West, Centre
+    private byte[] floorOffsets, ceilingOffsets;
+    private Door[] doors; // the door in each sector (null if one does not exist)
+
+    // bumped by every write; savedVersion is the version last written to the map's file, so saving can skip
+    // chunks that haven't changed, and a background save can tell if a chunk changed again while it was written
+    private long version, savedVersion;
+    // one bit per slot written since the edit journal last recorded this store, null if none have been
+    private long[] touched;
+
+    SectorStore(int capacity, TexturePalette palette) {
+        this.capacity = capacity;
+        this.palette = palette;
+    }
+
+    // ***** per-field accessors ***** //
+
+    short getWallFlags(int slot, int wall) {
+        return wallFlags == null ? 0 : wallFlags[slot * WALLS + wall];
+    }
+
+    void setWallFlags(int slot, int wall, short flags) {
+        touch(slot);
+        if (wallFlags == null) {
+            if (flags == 0) return;
+            wallFlags = new short[capacity * WALLS];
+        }
+        wallFlags[slot * WALLS + wall] = flags;
+    }
+
+    boolean getWallFlag(int slot, Direction which, short flag) {
+        return (getWallFlags(slot, which.ordinal()) & flag) != 0;
+    }
+
+    void setWallFlag(int slot, Direction which, short flag, boolean val) {
+        short flags = getWallFlags(slot, which.ordinal());
+        setWallFlags(slot, which.ordinal(), (short) (val ? flags | flag : flags & ~flag));
+    }
+
+    short getMainTex(int slot, int wall) {
+        return mainTex == null ? TexturePalette.DEFAULT_ID : mainTex[slot * WALLS + wall];
+    }
+
+    void setMainTex(int slot, int wall, short id) {
+        touch(slot);
+        if (mainTex == null) {
+            if (id == TexturePalette.DEFAULT_ID) return;
+            mainTex = filled(capacity * WALLS, TexturePalette.DEFAULT_ID);
+        }
+        mainTex[slot * WALLS + wall] = id;
+    }
+
+    short getAdjTex(int slot, int wall) {
+        return adjTex == null ? TexturePalette.NO_TEXTURE : adjTex[slot * WALLS + wall];
+    }
+
+    void setAdjTex(int slot, int wall, short id) {
+        touch(slot);
+        if (adjTex == null) {
+            if (id == TexturePalette.NO_TEXTURE) return;
+            adjTex = filled(capacity * WALLS, TexturePalette.NO_TEXTURE);
+        }
+        adjTex[slot * WALLS + wall] = id;
+    }
+
+    short getFloorTex(int slot) {
+        return floorTex == null ? TexturePalette.DEFAULT_ID : floorTex[slot];
+    }
+
+    void setFloorTex(int slot, short id) {
+        touch(slot);
+        if (floorTex == null) {
+            if (id == TexturePalette.DEFAULT_ID) return;
+            floorTex = filled(capacity, TexturePalette.DEFAULT_ID);
+        }
+        floorTex[slot] = id;
+    }
+
+    short getCeilingTex(int slot) {
+        return ceilingTex == null ? TexturePalette.DEFAULT_ID : ceilingTex[slot];
+    }
+
+    void setCeilingTex(int slot, short id) {
+        touch(slot);
+        if (ceilingTex == null) {
+            if (id == TexturePalette.DEFAULT_ID) return;
+            ceilingTex = filled(capacity, TexturePalette.DEFAULT_ID);
+        }
+        ceilingTex[slot] = id;
+    }
+
+    byte getSectorFlags(int slot) {
+        return sectorFlags == null ? 0 : sectorFlags[slot];
+    }
+
+    void setSectorFlags(int slot, byte flags) {
+        touch(slot);
+        if (sectorFlags == null) {
+            if (flags == 0) return;
+            sectorFlags = new byte[capacity];
+        }
+        sectorFlags[slot] = flags;
+    }
+
+    boolean getSectorFlag(int slot, byte flag) {
+        return (getSectorFlags(slot) & flag) != 0;
+    }
+
+    void setSectorFlag(int slot, byte flag, boolean val) {
+        byte flags = getSectorFlags(slot);
+        setSectorFlags(slot, (byte) (val ? flags | flag : flags & ~flag));
+    }
+
+    int getFloorOffset(int slot, int corner) {
+        return floorOffsets == null ? 0 : floorOffsets[slot * CORNERS + corner];
+    }
+
+    int getCeilingOffset(int slot, int corner) {
+        return ceilingOffsets == null ? 0 : ceilingOffsets[slot * CORNERS + corner];
+    }
+
+    void setFloorOffset(int slot, int corner, int offset) {
+        touch(slot);
+        if (floorOffsets == null) {
+            if (offset == 0) return;
+            floorOffsets = new byte[capacity * CORNERS];
+        }
+        floorOffsets[slot * CORNERS + corner] = (byte) offset;
+    }
+
+    void setCeilingOffset(int slot, int corner, int offset) {
+        touch(slot);
+        if (ceilingOffsets == null) {
+            if (offset == 0) return;
+            ceilingOffsets = new byte[capacity * CORNERS];
+        }
+        ceilingOffsets[slot * CORNERS + corner] = (byte) offset;
+    }
+
+    boolean isFloorFlush(int slot) {
+        return isFlush(floorOffsets, slot);
+    }
+
+    boolean isCeilingFlush(int slot) {
+        return isFlush(ceilingOffsets, slot);
+    }
+
+    Door getDoor(int slot) {
+        return doors == null ? null : doors[slot];
+    }
+
+    void setDoor(int slot, Door door) {
+        touch(slot);
+        if (doors == null) {
+            if (door == null) return;
+            doors = new Door[capacity];
+        }
+        doors[slot] = door;
+    }
+
+    // the door in a slot, for changing it in place (null if there is none)
+    Door editDoor(int slot) {
+        Door door = getDoor(slot);
+        if (door != null)
+            touch(slot);
+        return door;
+    }
+
+    private void touch(int slot) {
+        ++version;
+        if (touched == null)
+            touched = new long[(capacity + 63) >> 6];
+        touched[slot >> 6] |= 1L << slot;
+    }
+
+    boolean hasTouched() {
+        return touched != null;
+    }
+
+    // first slot at or after from that has been written since clearTouched, or -1
+    int nextTouched(int from) {
+        if (touched == null)
+            return -1;
+        for (int i = from >> 6; i < touched.length; i++) {
+            long bits = i == from >> 6 ? touched[i] & (-1L << from) : touched[i];
+            if (bits != 0)
+                return (i << 6) + Long.numberOfTrailingZeros(bits);
+        }
+        return -1;
+    }
+
+    void clearTouched() {
+        touched = null;
+    }
+
+    boolean isModified() {
+        return version != savedVersion;
+    }
+
+    long version() {
+        return version;
+    }
+
+    // the given version of the store is now in the map's file
+    void markSaved(long v) {
+        savedVersion = v;
+    }
+
+    // an independent copy of the store's data, for saving in the background while this store keeps changing
+    SectorStore copy() {
+        SectorStore c = new SectorStore(capacity, palette);
+        c.wallFlags = wallFlags == null ? null : wallFlags.clone();
+        c.mainTex = mainTex == null ? null : mainTex.clone();
+        c.adjTex = adjTex == null ? null : adjTex.clone();
+        c.floorTex = floorTex == null ? null : floorTex.clone();
+        c.ceilingTex = ceilingTex == null ? null : ceilingTex.clone();
+        c.sectorFlags = sectorFlags == null ? null : sectorFlags.clone();
+        c.floorOffsets = floorOffsets == null ? null : floorOffsets.clone();
+        c.ceilingOffsets = ceilingOffsets == null ? null : ceilingOffsets.clone();
+        if (doors != null) {
+            // doors are edited in place, so they're copied too
+            c.doors = new Door[capacity];
+            for (int i = 0; i < capacity; i++) {
+                Door d = doors[i];
+                if (d != null) {
+                    c.doors[i] = new Door(d.facingNorthSouth, d.doorPosition, d.opensVertical, d.type, d.openingTime,
+                            d.shootToOpen, d.texture1, d.texture2, d.keyId);
+                }
+            }
+        }
+        return c;
+    }
+
+    // ***** whole-slot operations ***** //
+
+    // release a slot so it doesn't keep anything reachable
+    void clear(int slot) {
+        setDoor(slot, null);
+    }
+
+    // copy everything about one sector from another store into a slot of this one
+    // only allocates arrays in this store for fields where the sector differs from the defaults
+    void copyFrom(SectorStore src, int srcSlot, int dstSlot) {
+        boolean samePalette = src.palette == palette;
+
+        for (int w = 0; w < WALLS; w++) {
+            setWallFlags(dstSlot, w, src.getWallFlags(srcSlot, w));
+            setMainTex(dstSlot, w, samePalette ? src.getMainTex(srcSlot, w) : translate(src, src.getMainTex(srcSlot, w)));
+            setAdjTex(dstSlot, w, samePalette ? src.getAdjTex(srcSlot, w) : translate(src, src.getAdjTex(srcSlot, w)));
+        }
+        setFloorTex(dstSlot, samePalette ? src.getFloorTex(srcSlot) : translate(src, src.getFloorTex(srcSlot)));
+        setCeilingTex(dstSlot, samePalette ? src.getCeilingTex(srcSlot) : translate(src, src.getCeilingTex(srcSlot)));
+        setSectorFlags(dstSlot, src.getSectorFlags(srcSlot));
+        for (int c = 0; c < CORNERS; c++) {
+            setFloorOffset(dstSlot, c, src.getFloorOffset(srcSlot, c));
+            setCeilingOffset(dstSlot, c, src.getCeilingOffset(srcSlot, c));
+        }
+
+        Door door = src.getDoor(srcSlot);
+        // texture ids only mean something in their own palette, so translate them through the names
+        if (door != null && !samePalette) {
+            door = new Door(door.facingNorthSouth, door.doorPosition, door.opensVertical, door.type,
+                    door.openingTime, door.shootToOpen,
+                    translate(src, door.texture1), translate(src, door.texture2), door.keyId);
+        }
+        setDoor(dstSlot, door);
+    }
+
+    private short translate(SectorStore src, short id) {
+        return palette.idOf(src.palette.nameOf(id));
+    }
+
+    // change every use of one texture id in this store to another
+    void remapTexture(short from, short to) {
+        ++version;
+        // a missing array stands for "all default", which has to be materialised if the default is being remapped
+        if (mainTex == null && from == TexturePalette.DEFAULT_ID)
+            mainTex = filled(capacity * WALLS, TexturePalette.DEFAULT_ID);
+        if (adjTex == null && from == TexturePalette.NO_TEXTURE)
+            adjTex = filled(capacity * WALLS, TexturePalette.NO_TEXTURE);
+        if (floorTex == null && from == TexturePalette.DEFAULT_ID)
+            floorTex = filled(capacity, TexturePalette.DEFAULT_ID);
+        if (ceilingTex == null && from == TexturePalette.DEFAULT_ID)
+            ceilingTex = filled(capacity, TexturePalette.DEFAULT_ID);
+
+        remap(mainTex, from, to);
+        remap(adjTex, from, to);
+        remap(floorTex, from, to);
+        remap(ceilingTex, from, to);
+        if (doors != null) {
+            for (Door d : doors) {
+                if (d != null) {
+                    if (d.texture1 == from) d.texture1 = to;
+                    if (d.texture2 == from) d.texture2 = to;
+                }
+            }
+        }
+    }
+
+    private static void remap(short[] ids, short from, short to) {
+        if (ids == null)
+            return;
+
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == from)
+                ids[i] = to;
+        }
+    }
+
+    private static short[] filled(int length, short value) {
+        short[] a = new short[length];
+        if (value != 0)
+            Arrays.fill(a, value);
+        return a;
+    }
+
+    private static boolean isFlush(byte[] offsets, int slot) {
+        if (offsets == null)
+            return true;
+
+        for (int c = slot * CORNERS; c < (slot + 1) * CORNERS; c++) {
+            if (offsets[c] != 0)
+                return false;
+        }
+        return true;
+    }
+}
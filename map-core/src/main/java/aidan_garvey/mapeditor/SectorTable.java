@@ -0,0 +1,107 @@
+package aidan_garvey.mapeditor;
+
+import java.util.Arrays;
+
+// dense table of every sector in a map, addressed by stable integer handles
+// a handle packs a slot index with the slot's generation; the generation changes whenever the slot is freed, so a
+// handle to a removed sector never resolves to whichever sector reuses its slot. The generation is only 7 bits, so
+// freed slots are reused oldest first, and only once MIN_FREE of them are waiting: a slot then has to be freed 128
+// times before an old handle to it can resolve again, which takes at least MIN_FREE * 128 removals in the map
+class SectorTable {
+    static final int NO_HANDLE = -1;
+    static final int INDEX_BITS = 24;
+    static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    static final int GENERATION_MASK = 0x7F; // 7 bits, so handles are never negative
+    static final int MIN_FREE = 1024;
+
+    private Sector[] sectors;
+    private byte[] generations;
+    private int[] freeSlots; // queue of free slot indices, in the order they were freed, from freeHead
+    private int freeHead, freeCount;
+    private int highWater; // slots at or above this index have never been used
+
+    SectorTable() {
+        sectors = new Sector[1024];
+        generations = new byte[1024];
+        freeSlots = new int[64];
+        freeHead = 0;
+        freeCount = 0;
+        highWater = 0;
+    }
+
+    // slot index the next sector added will get
+    int nextIndex() {
+        return reusesFreeSlot() ? freeSlots[freeHead] : highWater;
+    }
+
+    private boolean reusesFreeSlot() {
+        return freeCount >= MIN_FREE || (freeCount > 0 && highWater > INDEX_MASK);
+    }
+
+    // add a sector and return its new handle
+    int add(Sector s) {
+        int index;
+        if (reusesFreeSlot()) {
+            index = freeSlots[freeHead];
+            freeHead = (freeHead + 1) & (freeSlots.length - 1);
+            --freeCount;
+        }
+        else {
+            if (highWater > INDEX_MASK)
+                throw new IllegalStateException("Too many sectors in map");
+            if (highWater == sectors.length) {
+                sectors = Arrays.copyOf(sectors, sectors.length * 2);
+                generations = Arrays.copyOf(generations, generations.length * 2);
+            }
+            index = highWater++;
+        }
+
+        sectors[index] = s;
+        return (generations[index] << INDEX_BITS) | index;
+    }
+
+    // null if the handle is stale or was never issued
+    Sector get(int handle) {
+        if (handle < 0)
+            return null;
+
+        int index = handle & INDEX_MASK;
+        if (index >= highWater || generations[index] != (handle >>> INDEX_BITS))
+            return null;
+
+        return sectors[index];
+    }
+
+    void remove(int handle) {
+        if (get(handle) == null)
+            return;
+
+        int index = handle & INDEX_MASK;
+        sectors[index] = null;
+        generations[index] = (byte) ((generations[index] + 1) & GENERATION_MASK);
+
+        if (freeCount == freeSlots.length) {
+            // unwrap the queue into the start of a bigger array, which keeps the length a power of two
+            int[] grown = new int[freeSlots.length * 2];
+            System.arraycopy(freeSlots, freeHead, grown, 0, freeSlots.length - freeHead);
+            System.arraycopy(freeSlots, 0, grown, freeSlots.length - freeHead, freeHead);
+            freeSlots = grown;
+            freeHead = 0;
+        }
+        freeSlots[(freeHead + freeCount++) & (freeSlots.length - 1)] = index;
+    }
+
+    // sector in a slot, regardless of generation (null if the slot is free)
+    Sector getByIndex(int index) {
+        return index < highWater ? sectors[index] : null;
+    }
+
+    // number of slots ever used; every handle's index is below this
+    int capacity() {
+        return highWater;
+    }
+
+    static int indexOf(int handle) {
+        return handle & INDEX_MASK;
+    }
+}
@@ -0,0 +1,80 @@
+package aidan_garvey.mapeditor;
+
+import java.util.HashMap;
+
+// maps each texture name used in a map to a compact id, so sectors can store and compare textures as shorts
+// id 0 is always the default texture, so freshly zeroed storage is a default sector
+public class TexturePalette {
+    public static final String DEFAULT_NAME = "testTexture1.png";
+    public static final short NO_TEXTURE = -1; // id used for a missing (transparent) texture
+    public static final short DEFAULT_ID = 0;
+
+    private final HashMap<String, Short> ids;
+    // replaced rather than mutated when it grows, so reads don't need to lock
+    private volatile String[] names;
+    private int size;
+
+    public TexturePalette() {
+        this(16);
+    }
+
+    private TexturePalette(int capacity) {
+        ids = new HashMap<>();
+        names = new String[capacity];
+        size = 0;
+        idOf(DEFAULT_NAME);
+    }
+
+    // a palette for one sector that isn't in a map (see Sector), which only grows by the textures set on that sector
+    // and goes away with it
+    static TexturePalette detached() {
+        return new TexturePalette(2);
+    }
+
+    // id for the given texture name, adding it to the palette if needed
+    public synchronized short idOf(String name) {
+        if (name == null)
+            return NO_TEXTURE;
+
+        Short id = ids.get(name);
+        if (id != null)
+            return id;
+
+        if (size > Short.MAX_VALUE)
+            throw new IllegalStateException("Too many textures in palette");
+
+        String[] n = names;
+        if (size == n.length) {
+            n = new String[n.length * 2];
+            System.arraycopy(names, 0, n, 0, size);
+        }
+        n[size] = name;
+        names = n;
+        ids.put(name, (short) size);
+        return (short) size++;
+    }
+
+    public String nameOf(short id) {
+        return id == NO_TEXTURE ? null : names[id];
+    }
+
+    public synchronized boolean contains(String name) {
+        return ids.containsKey(name);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // give an existing id a new name, so every surface using it changes texture at once
+    // fails if the new name is already in the palette, or the id is the default id (new sectors always use it)
+    synchronized boolean rename(short id, String newName) {
+        if (id == DEFAULT_ID || id == NO_TEXTURE || newName == null || ids.containsKey(newName))
+            return false;
+
+        ids.remove(names[id]);
+        ids.put(newName, id);
+        names[id] = newName;
+        return true;
+    }
+}
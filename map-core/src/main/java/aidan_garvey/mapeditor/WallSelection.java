@@ -0,0 +1,101 @@
+package aidan_garvey.mapeditor;
+
+import java.util.Arrays;
+
+// a set of selected walls, possibly spread over many sectors
+// sectors are referenced by handle, so a sector removed from the map simply drops out of the selection
+// per-sector state is kept in dense arrays indexed by the handle's slot index
+public class WallSelection {
+    private final GameMap map;
+
+    private int[] handles; // selected sectors, in no particular order
+    private int count;
+
+    // indexed by SectorTable.indexOf(handle)
+    private int[] owner; // handle the entry belongs to (slots are reused with new generations), or NO_HANDLE
+    private int[] position; // where the handle is in handles
+    private byte[] masks; // selected walls of the sector, bit = Direction ordinal
+
+    public WallSelection(GameMap map) {
+        this.map = map;
+        handles = new int[16];
+        count = 0;
+        owner = new int[0];
+        position = new int[0];
+        masks = new byte[0];
+    }
+
+    // select the wall if it isn't selected, otherwise deselect it
+    public void toggle(Sector s, Direction d) {
+        int handle = s.getHandle();
+        if (handle == SectorTable.NO_HANDLE || map.getSector(handle) != s)
+            return;
+
+        int index = SectorTable.indexOf(handle);
+        ensureCapacity(index + 1);
+
+        if (owner[index] != handle) {
+            // a stale entry from a removed sector may still be using this slot
+            if (owner[index] != SectorTable.NO_HANDLE)
+                removeAt(index);
+
+            if (count == handles.length)
+                handles = Arrays.copyOf(handles, count * 2);
+            owner[index] = handle;
+            position[index] = count;
+            masks[index] = 0;
+            handles[count++] = handle;
+        }
+
+        masks[index] ^= 1 << d.ordinal();
+        if (masks[index] == 0)
+            removeAt(index);
+    }
+
+    public boolean isSelected(Sector s, Direction d) {
+        int handle = s.getHandle();
+        int index = SectorTable.indexOf(handle);
+        return handle != SectorTable.NO_HANDLE && index < owner.length && owner[index] == handle
+                && (masks[index] & (1 << d.ordinal())) != 0;
+    }
+
+    public void clear() {
+        for (int i = 0; i < count; i++)
+            owner[SectorTable.indexOf(handles[i])] = SectorTable.NO_HANDLE;
+        count = 0;
+    }
+
+    // number of sectors with at least one selected wall (including any that have since been removed from the map)
+    public int sectorCount() {
+        return count;
+    }
+
+    // the i-th selected sector, or null if it has been removed from the map
+    public Sector sectorAt(int i) {
+        return map.getSector(handles[i]);
+    }
+
+    public boolean hasWall(int i, Direction d) {
+        return (masks[SectorTable.indexOf(handles[i])] & (1 << d.ordinal())) != 0;
+    }
+
+    private void removeAt(int index) {
+        int pos = position[index];
+        int last = handles[--count];
+        handles[pos] = last;
+        position[SectorTable.indexOf(last)] = pos;
+        owner[index] = SectorTable.NO_HANDLE;
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= owner.length)
+            return;
+
+        int newLength = Math.max(n, owner.length * 2);
+        int oldLength = owner.length;
+        owner = Arrays.copyOf(owner, newLength);
+        Arrays.fill(owner, oldLength, newLength, SectorTable.NO_HANDLE);
+        position = Arrays.copyOf(position, newLength);
+        masks = Arrays.copyOf(masks, newLength);
+    }
+}
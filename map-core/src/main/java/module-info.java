@@ -0,0 +1,5 @@
+module aidan_garvey.mapeditor {
+    requires jdk.unsupported; // sun.misc.Unsafe.invokeCleaner, to unmap map files (see MapFile.unmap)
+
+    exports aidan_garvey.mapeditor;
+}
@@ -0,0 +1,93 @@
+package aidan_garvey.mapeditor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkCodecTest {
+    @TempDir
+    Path dir;
+
+    // records that are mostly zeros with a few values scattered through them, like sectors close to the defaults
+    private static byte[] records(int count, long seed) {
+        byte[] b = new byte[count * MapFile.RECORD_SIZE];
+        Random r = new Random(seed);
+        for (int i = 0; i < b.length / 10; i++)
+            b[r.nextInt(b.length)] = (byte) r.nextInt(256);
+        return b;
+    }
+
+    private static byte[] packAndUnpack(ChunkCodec codec, byte[] records, int count) throws IOException {
+        codec.records().put(records);
+        int length = codec.pack(count);
+        // unpack from the middle of a bigger buffer, as from a map file
+        ByteBuffer file = ByteBuffer.allocate(length + 20);
+        file.put(10, codec.packed(), 0, length);
+
+        byte[] out = new byte[records.length];
+        codec.unpack(file, 10, length, count).get(out);
+        return out;
+    }
+
+    @Test
+    void packedRecordsRoundTrip() throws IOException {
+        try (ChunkCodec codec = new ChunkCodec()) {
+            for (int count : new int[] {1, 17, Floor.CHUNK_AREA}) {
+                byte[] records = records(count, count);
+                assertArrayEquals(records, packAndUnpack(codec, records, count), count + " records");
+            }
+            // runs of zeros longer than one run can hold, and a chunk of nothing but defaults
+            byte[] zeros = new byte[Floor.CHUNK_AREA * MapFile.RECORD_SIZE];
+            assertArrayEquals(zeros, packAndUnpack(codec, zeros, Floor.CHUNK_AREA));
+            byte[] full = new byte[300 * MapFile.RECORD_SIZE];
+            Arrays.fill(full, (byte) 0xFF);
+            assertArrayEquals(full, packAndUnpack(codec, full, 300));
+        }
+    }
+
+    @Test
+    void truncatedChunkIsReported() {
+        try (ChunkCodec codec = new ChunkCodec()) {
+            codec.records().put(records(50, 1));
+            int length = codec.pack(50);
+            ByteBuffer file = ByteBuffer.wrap(Arrays.copyOf(codec.packed(), length));
+            assertThrows(IOException.class, () -> codec.unpack(file, 0, length - 3, 50));
+            // the right data, but told to expect more records than it holds
+            assertThrows(IOException.class, () -> codec.unpack(file, 0, length, 51));
+        }
+    }
+
+    @Test
+    void compressedSaveRoundTrips() throws IOException {
+        Path path = dir.resolve("packed." + MapFile.COMPRESSED_EXTENSION);
+        GameMap map = MapFileTest.sampleMap();
+        MapFile.save(map, path);
+        assertEquals(MapFileTest.describe(map), MapFileTest.describe(MapFile.load(path)));
+
+        // and again, appending to the compressed file
+        GameMap loaded = MapFile.load(path);
+        loaded.getSector(0, 0, 0).setCeilingTexture("SKY2");
+        loaded.removeSector(1, 1, 0);
+        assertTrue(MapFile.snapshot(loaded, path, false).append);
+        MapFile.save(loaded, path);
+        assertEquals(MapFileTest.describe(loaded), MapFileTest.describe(MapFile.load(path)));
+    }
+
+    // the same map reads back the same from either kind of file
+    @Test
+    void bothFormatsMatch() throws IOException {
+        Path plain = dir.resolve("switch." + MapFile.EXTENSION);
+        Path packed = dir.resolve("switch." + MapFile.COMPRESSED_EXTENSION);
+        GameMap map = MapFileTest.sampleMap();
+        MapFile.save(map, plain);
+        MapFile.save(map, packed);
+        assertEquals(MapFileTest.describe(MapFile.load(plain)), MapFileTest.describe(MapFile.load(packed)));
+    }
+}
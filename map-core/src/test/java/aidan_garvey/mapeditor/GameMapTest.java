@@ -0,0 +1,100 @@
+package aidan_garvey.mapeditor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameMapTest {
+    @Test
+    void readdedSectorKeepsKeyUsage() {
+        GameMap map = new GameMap();
+        map.addKey("A");
+        Sector door = new Sector(1, 0, 0);
+        map.addSector(door);
+        map.addDoor(door);
+        map.setDoorKey(door, "A");
+
+        map.removeSector(door);
+        assertEquals(List.of(), map.getDoorsUsingKey("A"));
+        map.addSector(door);
+        assertEquals(List.of(door), map.getDoorsUsingKey("A"));
+
+        map.deleteKey("A");
+        assertNull(map.getDoorKey(door));
+    }
+
+    @Test
+    void replacedDoorDropsKeyUsage() {
+        GameMap map = new GameMap();
+        map.addKey("A");
+        Sector door = new Sector(1, 0, 0);
+        map.addSector(door);
+        map.addDoor(door);
+        map.setDoorKey(door, "A");
+
+        map.addDoor(door);
+        assertNull(map.getDoorKey(door));
+        assertEquals(List.of(), map.getDoorsUsingKey("A"));
+    }
+
+    // sectors outside a map keep their textures in palettes of their own, which don't outlive them
+    @Test
+    void detachedSectorsKeepTexturesToThemselves() {
+        Sector a = new Sector(0, 0, 0), b = new Sector(1, 0, 0);
+        a.setFloorTexture("STONE");
+        assertFalse(a.sharesPalette(b));
+        assertEquals(TexturePalette.DEFAULT_NAME, b.getFloorTexture());
+
+        GameMap map = new GameMap();
+        map.addSector(a);
+        map.addSector(b);
+        assertEquals("STONE", a.getFloorTexture());
+        assertTrue(a.sharesPalette(b));
+
+        map.removeSector(a);
+        assertEquals("STONE", a.getFloorTexture());
+        assertFalse(a.sharesPalette(b));
+    }
+
+    // a slot freed from a region that hasn't been rebuilt yet can be handed to a new sector
+    @Test
+    void regionsStayRightWhenSlotsAreReused() {
+        GameMap map = new GameMap();
+        map.removeSector(0, 0, 0);
+        int n = SectorTable.MIN_FREE + 100;
+        for (int z = 0; z < n; z++) {
+            map.addSector(new Sector(z, 0, 0));
+            if (z > 0)
+                map.setWallAdjoin(map.getSector(z - 1, 0, 0), Direction.EAST, true);
+        }
+        Sector last = map.getSector(n - 1, 0, 0);
+        assertEquals(n, map.getRegionSize(map.getRegion(last)));
+
+        // removing the start of the row leaves its region to be rebuilt, then new sectors reuse the freed slots
+        for (int z = 0; z < SectorTable.MIN_FREE + 50; z++)
+            map.removeSector(z, 0, 0);
+        Sector alone = new Sector(0, 10, 0);
+        map.addSector(alone);
+        Sector joined = new Sector(SectorTable.MIN_FREE + 49, 0, 0);
+        map.addSector(joined);
+        map.setWallAdjoin(joined, Direction.EAST, true);
+
+        assertEquals(1, map.getRegionSize(map.getRegion(alone)));
+        assertEquals(51, map.getRegionSize(map.getRegion(last)));
+        assertEquals(map.getRegion(last), map.getRegion(joined));
+    }
+
+    @Test
+    void keyOnSectorWithoutDoorIsRefused() {
+        GameMap map = new GameMap();
+        Sector s = map.getSector(0, 0, 0);
+        assertFalse(map.setDoorKey(s, "A"));
+        assertEquals(List.of(), map.getKeys());
+
+        map.addDoor(s);
+        assertTrue(map.setDoorKey(s, "A"));
+        assertEquals("A", map.getDoorKey(s));
+    }
+}
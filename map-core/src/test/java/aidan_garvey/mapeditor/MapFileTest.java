@@ -0,0 +1,332 @@
+package aidan_garvey.mapeditor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MapFileTest {
+    @TempDir
+    Path dir;
+
+    // doors in chunks that aren't edited keep their key ids in the file, so the ids have to mean the same keys
+    // after the map is loaded again, even with deleted keys before them
+    @Test
+    void keysSurviveIncrementalSaveAfterDelete() throws IOException {
+        Path path = dir.resolve("keys." + MapFile.EXTENSION);
+
+        GameMap map = new GameMap();
+        for (String k : new String[] {"A", "B", "C", "D"})
+            map.addKey(k);
+        Sector door = new Sector(1, 0, 0);
+        map.addSector(door);
+        map.addDoor(door);
+        map.setDoorKey(door, "C");
+        map.addSector(new Sector(100, 0, 0)); // in another chunk
+        map.deleteKey("B");
+        MapFile.save(map, path);
+
+        GameMap loaded = MapFile.load(path);
+        Sector far = loaded.getSector(100, 0, 0);
+        loaded.addDoor(far);
+        loaded.setDoorKey(far, "D");
+        assertTrue(MapFile.snapshot(loaded, path, false).append);
+        MapFile.save(loaded, path);
+
+        GameMap reloaded = MapFile.load(path);
+        assertEquals("C", reloaded.getDoorKey(reloaded.getSector(1, 0, 0)));
+        assertEquals("D", reloaded.getDoorKey(reloaded.getSector(100, 0, 0)));
+        assertEquals(List.of("A", "C", "D"), reloaded.getKeys());
+        assertEquals(1, reloaded.getDoorsUsingKey("C").size());
+    }
+
+    // texture ids are kept in the records of chunks that an incremental save doesn't rewrite, the same as key ids
+    @Test
+    void texturesSurviveIncrementalSave() throws IOException {
+        Path path = dir.resolve("textures." + MapFile.EXTENSION);
+
+        GameMap map = new GameMap();
+        map.getSector(0, 0, 0).setFloorTexture("STONE");
+        map.addSector(new Sector(100, 0, 0)); // in another chunk
+        map.getSector(100, 0, 0).setFloorTexture("GRASS");
+        map.replaceTexture("GRASS", "STONE"); // STONE is in use, so GRASS stays in the palette unused
+        MapFile.save(map, path);
+
+        GameMap loaded = MapFile.load(path);
+        loaded.getSector(100, 0, 0).setCeilingTexture("MUD");
+        assertTrue(MapFile.snapshot(loaded, path, false).append);
+        MapFile.save(loaded, path);
+
+        GameMap reloaded = MapFile.load(path);
+        assertEquals("STONE", reloaded.getSector(0, 0, 0).getFloorTexture());
+        assertEquals("STONE", reloaded.getSector(100, 0, 0).getFloorTexture());
+        assertEquals("MUD", reloaded.getSector(100, 0, 0).getCeilingTexture());
+    }
+
+    // a texture named twice in the directory can't keep its ids, so the file is refused rather than loaded wrong
+    @Test
+    void duplicateTextureIsRefused() throws IOException {
+        Path path = dir.resolve("duplicate." + MapFile.EXTENSION);
+        GameMap map = new GameMap();
+        map.getSector(0, 0, 0).setFloorTexture("testTexture2.png");
+        MapFile.save(map, path);
+
+        byte[] bytes = Files.readAllBytes(path);
+        String text = new String(bytes, StandardCharsets.ISO_8859_1);
+        int at = text.lastIndexOf("testTexture2.png");
+        bytes[at + "testTexture".length()] = '1';
+        Files.write(path, bytes);
+
+        assertThrows(IOException.class, () -> MapFile.load(path));
+    }
+
+    @Test
+    void fullSaveRoundTrips() throws IOException {
+        Path path = dir.resolve("full." + MapFile.EXTENSION);
+        GameMap map = sampleMap();
+        MapFile.save(map, path);
+        assertEquals(describe(map), describe(MapFile.load(path)));
+    }
+
+    @Test
+    void appendSaveRoundTripsEditsAndDeletes() throws IOException {
+        Path path = dir.resolve("append." + MapFile.EXTENSION);
+        MapFile.save(sampleMap(), path);
+
+        GameMap loaded = MapFile.load(path);
+        Sector edited = loaded.getSector(3, 4, 0);
+        edited.setFloorTexture("LAVA");
+        loaded.setWallAdjoin(edited, Direction.NORTH, false);
+        loaded.removeSector(5, 5, 0);
+        loaded.removeSector(40, 2, 1);
+        loaded.addSector(new Sector(-70, 90, 0)); // in a chunk the file doesn't have yet
+        loaded.addKey("silver");
+        Sector door = loaded.getSector(-70, 90, 0);
+        loaded.addDoor(door);
+        loaded.setDoorKey(door, "silver");
+        assertTrue(MapFile.snapshot(loaded, path, false).append);
+        MapFile.save(loaded, path);
+
+        GameMap reloaded = MapFile.load(path);
+        assertEquals(describe(loaded), describe(reloaded));
+        assertFalse(reloaded.sectorExists(5, 5, 0));
+        assertEquals("LAVA", reloaded.getSector(3, 4, 0).getFloorTexture());
+    }
+
+    // a run of incremental saves, each reloaded, ends up with the same map as the one edited
+    @Test
+    void repeatedAppendSavesRoundTrip() throws IOException {
+        Path path = dir.resolve("repeated." + MapFile.EXTENSION);
+        GameMap map = sampleMap();
+        MapFile.save(map, path);
+
+        for (int round = 0; round < 5; round++) {
+            Sector s = map.getSector(round, round % 6, 0);
+            s.setFloorTexture("ROUND" + round);
+            map.removeSector(round + 1, 5, 1 - round % 2);
+            map.addSector(new Sector(200 + round * 40, 0, 2)); // a new chunk on a new floor
+            assertTrue(MapFile.snapshot(map, path, false).append);
+            MapFile.save(map, path);
+            assertEquals(describe(map), describe(MapFile.load(path)), "round " + round);
+        }
+    }
+
+    // an incremental save only writes the chunks that changed, so the file grows by one chunk, not the whole map
+    @Test
+    void appendSaveOnlyWritesChangedChunks() throws IOException {
+        Path path = dir.resolve("small." + MapFile.EXTENSION);
+        GameMap map = new GameMap();
+        for (int z = 0; z < 4 * Floor.CHUNK_SIZE; z++) {
+            for (int x = 0; x < 2 * Floor.CHUNK_SIZE; x++)
+                map.addSector(new Sector(z, x, 0));
+        }
+        MapFile.save(map, path);
+        long before = Files.size(path);
+
+        GameMap loaded = MapFile.load(path);
+        loaded.getSector(5, 5, 0).setFloorTexture("STONE");
+        MapFile.save(loaded, path);
+        long grown = Files.size(path) - before;
+        assertTrue(grown > (long) Floor.CHUNK_AREA * MapFile.RECORD_SIZE);
+        assertTrue(grown < 2L * Floor.CHUNK_AREA * MapFile.RECORD_SIZE);
+        assertEquals(describe(loaded), describe(MapFile.load(path)));
+    }
+
+    // a floor emptied since the last save is dropped from the new directory
+    @Test
+    void appendSaveDropsEmptiedFloor() throws IOException {
+        Path path = dir.resolve("emptied." + MapFile.EXTENSION);
+        GameMap map = sampleMap();
+        MapFile.save(map, path);
+
+        GameMap loaded = MapFile.load(path);
+        for (int z = 40; z < 48; z++) {
+            for (int x = 0; x < 6; x++)
+                loaded.removeSector(z, x, 1);
+        }
+        loaded.compactFloors();
+        MapFile.save(loaded, path);
+
+        GameMap reloaded = MapFile.load(path);
+        assertEquals(describe(loaded), describe(reloaded));
+        assertEquals(1, reloaded.getFloorCount());
+    }
+
+    // a full save over the file a map was loaded from decodes every floor and lets go of the old file first
+    @Test
+    void fullSaveReplacesFileMapWasLoadedFrom() throws IOException {
+        Path path = dir.resolve("replace." + MapFile.EXTENSION);
+        GameMap map = sampleMap();
+        MapFile.save(map, path);
+
+        GameMap loaded = MapFile.load(path);
+        assertNotNull(loaded.getMappedFile());
+        MapFile.saveAll(loaded, path);
+        assertNull(loaded.getMappedFile());
+        assertEquals(describe(map), describe(loaded));
+        assertEquals(describe(map), describe(MapFile.load(path)));
+    }
+
+    // a floor with a corrupt chunk is left out rather than half loaded, and can't be lost by a save
+    @Test
+    void corruptFloorIsLeftInTheFile() throws IOException {
+        Path path = dir.resolve("corrupt." + MapFile.EXTENSION);
+        GameMap map = new GameMap();
+        map.addSector(new Sector(0, 0, 1));
+        map.addSector(new Sector(1, 0, 1));
+        MapFile.save(map, path);
+
+        // give the first record of floor 1 a slot that's out of range
+        byte[] bytes = Files.readAllBytes(path);
+        ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        buf.position((int) buf.getLong(8));
+        for (int i = buf.getInt(); i > 0; i--)
+            MapFile.readString(buf);
+        for (int i = buf.getInt(); i > 0; i--)
+            MapFile.readString(buf);
+        int floorCount = buf.getInt(), chunkOffset = -1;
+        for (int i = 0; i < floorCount; i++) {
+            int y = buf.getInt(), chunks = buf.getInt();
+            for (int j = 0; j < chunks; j++) {
+                buf.getInt();
+                buf.getInt();
+                long offset = buf.getLong();
+                buf.getInt();
+                buf.getInt();
+                if (y == 1)
+                    chunkOffset = (int) offset;
+            }
+        }
+        buf.putShort(chunkOffset, Short.MAX_VALUE);
+        Files.write(path, bytes);
+
+        GameMap loaded = MapFile.load(path);
+        assertTrue(loaded.sectorExists(0, 0, 0));
+        assertFalse(loaded.sectorExists(0, 0, 1));
+        assertFalse(loaded.sectorExists(0, 0, 1)); // and again, without registering a half-decoded floor
+        loaded.addSector(new Sector(5, 5, 1));
+        assertFalse(loaded.sectorExists(5, 5, 1));
+
+        // a new file would need the floor's records decoded
+        assertThrows(IOException.class, () -> MapFile.saveAll(loaded, dir.resolve("copy." + MapFile.EXTENSION)));
+        // an incremental save keeps them as they were
+        loaded.getSector(0, 0, 0).setFloorTexture("STONE");
+        assertTrue(MapFile.snapshot(loaded, path, false).append);
+        MapFile.save(loaded, path);
+        assertEquals(chunkOffset, findBytes(Files.readAllBytes(path), bytes, chunkOffset));
+    }
+
+    // where the record at offset in original is in bytes, or -1
+    private static int findBytes(byte[] bytes, byte[] original, int offset) {
+        byte[] record = Arrays.copyOfRange(original, offset, offset + MapFile.RECORD_SIZE);
+        for (int i = 0; i + record.length <= bytes.length; i++) {
+            if (Arrays.equals(bytes, i, i + record.length, record, 0, record.length))
+                return i;
+        }
+        return -1;
+    }
+
+    // a few rooms over two floors and several chunks, with textures, adjoins, offsets and doors
+    static GameMap sampleMap() {
+        GameMap map = new GameMap();
+        map.addKey("red");
+        map.addKey("blue");
+        for (int y = 0; y < 2; y++) {
+            for (int z = 0; z < 8; z++) {
+                for (int x = 0; x < 6; x++) {
+                    Sector s = new Sector(z + y * 40, x, y);
+                    if (!map.sectorExists(s.getZPos(), x, y))
+                        map.addSector(s);
+                }
+            }
+        }
+        int i = 0;
+        for (int y = 0; y < 2; y++) {
+            for (int z = 0; z < 8; z++) {
+                for (int x = 0; x < 6; x++, i++) {
+                    Sector s = map.getSector(z + y * 40, x, y);
+                    s.setFloorTexture("FLOOR" + i % 3);
+                    s.setCeilingTexture("CEIL" + i % 2);
+                    s.setMainTexture(Direction.values()[i % 4], "WALL" + i % 5);
+                    s.setFloorOffsets(new int[] {i % 3, 0, 1, i % 2, 0});
+                    if (x + 1 < 6 && i % 3 != 0)
+                        map.setWallAdjoin(s, Direction.SOUTH, true);
+                    if (z + 1 < 8 && i % 4 != 0)
+                        map.setWallAdjoin(s, Direction.EAST, true);
+                }
+            }
+        }
+        Sector red = map.getSector(2, 2, 0);
+        map.addDoor(red);
+        map.setDoorKey(red, "red");
+        map.setDoorPos(red, 2);
+        Sector blue = map.getSector(44, 3, 1);
+        map.addDoor(blue);
+        map.setDoorKey(blue, "blue");
+        map.setDoorSpeed(blue, 2.5);
+        map.addSector(new Sector(100, -50, 0)); // alone in a far chunk
+        return map;
+    }
+
+    // everything saved about every sector of the map, in order, for comparing maps
+    static List<String> describe(GameMap map) {
+        List<String> out = new ArrayList<>();
+        out.add("keys " + map.getKeys());
+        for (int i = 0; i < map.getFloorCount(); i++) {
+            List<String> floor = new ArrayList<>();
+            map.getFloor(map.getFloorNumber(i)).forEach(s -> floor.add(describe(map, s)));
+            floor.sort(null);
+            out.addAll(floor);
+        }
+        return out;
+    }
+
+    private static String describe(GameMap map, Sector s) {
+        StringBuilder b = new StringBuilder();
+        b.append(s.getZPos()).append(',').append(s.getXPos()).append(',').append(s.getYPos());
+        for (Direction d : Direction.values()) {
+            b.append(' ').append(d).append(s.getWallAdjoin(d)).append(s.getMainTexture(d)).append('/')
+                    .append(s.getAdjTexture(d)).append(s.getAlignToFloor(d)).append(s.getMainHFlip(d));
+        }
+        b.append(" floor ").append(s.getFloorTexture()).append(s.getFloorAdjoin())
+                .append(Arrays.toString(s.getFloorOffsets()));
+        b.append(" ceiling ").append(s.getCeilingTexture()).append(s.getCeilingAdjoin()).append(s.getSky())
+                .append(Arrays.toString(s.getCeilingOffsets()));
+        if (s.hasDoor()) {
+            b.append(" door ").append(s.doorIsNorthSouth()).append(s.getDoorPos()).append(s.getDoorType())
+                    .append(s.getDoorSpeed()).append(s.getDoorTexture1()).append(s.getDoorTexture2())
+                    .append(map.getDoorKey(s));
+        }
+        return b.toString();
+    }
+}
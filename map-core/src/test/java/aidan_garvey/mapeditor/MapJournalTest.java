@@ -0,0 +1,153 @@
+package aidan_garvey.mapeditor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MapJournalTest {
+    // the journal's own timer does nothing, so batches are only written when the test asks
+    private static final Executor NO_CALLBACKS = r -> {};
+
+    @TempDir
+    Path dir;
+
+    // a crash can leave half a batch at the end of the journal; everything before it comes back, the torn batch doesn't
+    @Test
+    void recoversEditsBeforeTruncatedTail() throws IOException {
+        Path path = dir.resolve("crash." + MapFile.EXTENSION);
+        MapFile.save(MapFileTest.sampleMap(), path);
+
+        GameMap map = MapFile.load(path);
+        MapJournal journal = MapJournal.create(map, path, NO_CALLBACKS);
+        Sector edited = map.getSector(3, 4, 0);
+        edited.setFloorTexture("LAVA");
+        map.setWallAdjoin(edited, Direction.NORTH, false);
+        map.removeSector(5, 5, 0);
+        map.addKey("silver");
+        map.addSector(new Sector(-70, 90, 0));
+        map.renameKey("red", "crimson");
+        journal.sync();
+        List<String> expected = MapFileTest.describe(map);
+        long intact = Files.size(MapJournal.pathFor(path));
+
+        // a batch that never finishes being written
+        map.removeSector(0, 0, 0);
+        map.getSector(1, 1, 0).setCeilingTexture("TORN");
+        journal.sync();
+        journal.close();
+        long full = Files.size(MapJournal.pathFor(path));
+        assertTrue(full > intact);
+        try (FileChannel ch = FileChannel.open(MapJournal.pathFor(path), StandardOpenOption.WRITE)) {
+            ch.truncate(full - 3);
+        }
+
+        assertTrue(MapJournal.hasEdits(path));
+        GameMap recovered = MapFile.load(path);
+        MapJournal again = MapJournal.recover(recovered, path, NO_CALLBACKS);
+        try {
+            assertTrue(again.getRecoveredCount() > 0);
+            assertEquals(expected, MapFileTest.describe(recovered));
+            assertTrue(recovered.sectorExists(0, 0, 0));
+        }
+        finally {
+            again.close();
+        }
+    }
+
+    // a map that wasn't edited since the journal was started has nothing to recover
+    @Test
+    void untouchedJournalHasNoEdits() throws IOException {
+        Path path = dir.resolve("clean." + MapFile.EXTENSION);
+        MapFile.save(MapFileTest.sampleMap(), path);
+
+        MapJournal journal = MapJournal.create(MapFile.load(path), path, NO_CALLBACKS);
+        journal.sync();
+        journal.close();
+        assertFalse(MapJournal.hasEdits(path));
+    }
+
+    // edits thrown away on purpose aren't offered back when the map is opened again
+    @Test
+    void discardedJournalHasNoEdits() throws IOException {
+        Path path = dir.resolve("discard." + MapFile.EXTENSION);
+        MapFile.save(MapFileTest.sampleMap(), path);
+
+        GameMap map = MapFile.load(path);
+        MapJournal journal = MapJournal.create(map, path, NO_CALLBACKS);
+        map.removeSector(0, 0, 0);
+        journal.sync();
+        assertTrue(MapJournal.hasEdits(path));
+        journal.discard();
+        assertFalse(MapJournal.hasEdits(path));
+        assertFalse(Files.exists(MapJournal.pathFor(path)));
+    }
+
+    // renamed and deleted keys and replaced textures are replayed by name
+    @Test
+    void recoversNameChanges() throws IOException {
+        Path path = dir.resolve("names." + MapFile.EXTENSION);
+        MapFile.save(MapFileTest.sampleMap(), path);
+
+        GameMap map = MapFile.load(path);
+        MapJournal journal = MapJournal.create(map, path, NO_CALLBACKS);
+        map.replaceTexture("FLOOR0", "MARBLE");
+        map.replaceTexture("FLOOR1", "FLOOR2"); // merged into a texture already in use
+        map.renameKey("red", "crimson");
+        map.deleteKey("blue");
+        map.addKey("green");
+        map.setDoorKey(map.getSector(2, 2, 0), "green");
+        journal.sync();
+        journal.close();
+
+        GameMap recovered = MapFile.load(path);
+        MapJournal.recover(recovered, path, NO_CALLBACKS).close();
+        assertEquals(MapFileTest.describe(map), MapFileTest.describe(recovered));
+    }
+
+    // a save starts the journal again from the saved file, keeping the edits made after the save's snapshot
+    @Test
+    void recoversEditsAfterSave() throws Exception {
+        Path path = dir.resolve("saved." + MapFile.EXTENSION);
+        MapFile.save(MapFileTest.sampleMap(), path);
+
+        GameMap map = MapFile.load(path);
+        MapJournal journal = MapJournal.create(map, path, NO_CALLBACKS);
+        map.getSector(0, 0, 0).setFloorTexture("BEFORE");
+        journal.sync();
+
+        BlockingQueue<Runnable> callbacks = new LinkedBlockingQueue<>();
+        MapSaver saver = new MapSaver(callbacks::add);
+        boolean[] saved = {false};
+        saver.save(map, path, journal, p -> {}, e -> saved[0] = e == null);
+        map.getSector(1, 1, 0).setFloorTexture("DURING");
+        while (saver.isSaving()) {
+            Runnable r = callbacks.poll(1, TimeUnit.MINUTES);
+            assertNotNull(r);
+            r.run();
+        }
+        saver.shutdown();
+        assertTrue(saved[0]);
+
+        map.removeSector(2, 3, 0);
+        journal.sync();
+        journal.close();
+
+        GameMap recovered = MapFile.load(path);
+        assertEquals("BEFORE", recovered.getSector(0, 0, 0).getFloorTexture());
+        MapJournal again = MapJournal.recover(recovered, path, NO_CALLBACKS);
+        again.close();
+        assertEquals(MapFileTest.describe(map), MapFileTest.describe(recovered));
+    }
+}
@@ -0,0 +1,76 @@
+package aidan_garvey.mapeditor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MapSaverTest {
+    @TempDir
+    Path dir;
+
+    // every save requested gets an answer, even one replaced while waiting for the save ahead of it
+    @Test
+    void replacedSavesAreAnswered() throws Exception {
+        // callbacks only run when the test runs them, so the first save stays busy until then
+        BlockingQueue<Runnable> callbacks = new LinkedBlockingQueue<>();
+        MapSaver saver = new MapSaver(callbacks::add);
+        GameMap map = new GameMap();
+        Path a = dir.resolve("a." + MapFile.EXTENSION), b = dir.resolve("b." + MapFile.EXTENSION);
+
+        List<String> answers = new ArrayList<>();
+        saver.save(map, a, p -> {}, e -> answers.add("1 " + (e == null)));
+        saver.save(map, a, p -> {}, e -> answers.add("2 " + (e == null)));
+        saver.save(map, a, p -> {}, e -> answers.add("3 " + (e == null)));
+        // 2 and 3 would have saved the same thing, so 3 answers for both
+        saver.save(map, b, p -> {}, e -> answers.add("4 " + (e == null)));
+        assertEquals(List.of("2 false", "3 false"), answers);
+
+        while (answers.size() < 4) {
+            Runnable r = callbacks.poll(1, TimeUnit.MINUTES);
+            assertNotNull(r);
+            r.run();
+        }
+        assertEquals(List.of("2 false", "3 false", "1 true", "4 true"), answers);
+        assertFalse(saver.isSaving());
+        saver.shutdown();
+    }
+
+    // saves of the same map to the same file are answered by the save that replaced them
+    @Test
+    void replacedSaveOfSameFileSharesResult() throws Exception {
+        BlockingQueue<Runnable> callbacks = new LinkedBlockingQueue<>();
+        MapSaver saver = new MapSaver(callbacks::add);
+        GameMap map = new GameMap();
+        Path a = dir.resolve("a." + MapFile.EXTENSION);
+
+        List<IOException> results = new ArrayList<>();
+        int[] answered = {0};
+        saver.save(map, a, p -> {}, e -> answered[0]++);
+        saver.save(map, a, p -> {}, e -> {
+            results.add(e);
+            answered[0]++;
+        });
+        saver.save(map, a, p -> {}, e -> {
+            results.add(e);
+            answered[0]++;
+        });
+        while (answered[0] < 3) {
+            Runnable r = callbacks.poll(1, TimeUnit.MINUTES);
+            assertNotNull(r);
+            r.run();
+        }
+        assertEquals(2, results.size());
+        assertNull(results.get(0));
+        assertNull(results.get(1));
+        saver.shutdown();
+    }
+}
@@ -0,0 +1,91 @@
+package aidan_garvey.mapeditor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// chunks are encoded and decoded in parallel on the fork/join pool the save or load runs in; these maps have enough
+// chunks and floors to be split over many tasks and encode batches
+class ParallelMapIoTest {
+    @TempDir
+    Path dir;
+
+    // a few sectors in each of many chunks on several floors, each sector a little different
+    private static GameMap spreadMap() {
+        GameMap map = new GameMap();
+        map.addKey("gold");
+        int i = 0;
+        for (int y = -1; y < 3; y++) {
+            for (int cz = 0; cz < 20; cz++) {
+                for (int cx = 0; cx < 20; cx++, i++) {
+                    int z = cz * Floor.CHUNK_SIZE + i % 7, x = cx * Floor.CHUNK_SIZE + i % 5;
+                    Sector s = new Sector(z, x, y);
+                    map.addSector(s);
+                    s.setFloorTexture("FLOOR" + i % 11);
+                    Sector t = new Sector(z + 1, x, y);
+                    map.addSector(t);
+                    map.setWallAdjoin(s, Direction.EAST, true);
+                    if (i % 13 == 0) {
+                        map.addDoor(t);
+                        map.setDoorKey(t, "gold");
+                    }
+                }
+            }
+        }
+        return map;
+    }
+
+    private static void saveAndCompare(Path path, int threads) throws Exception {
+        GameMap map = spreadMap();
+        List<String> expected = MapFileTest.describe(map);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(ForkJoinTask.adapt(() -> {
+                MapFile.saveAll(map, path);
+                return null;
+            }));
+            GameMap loaded = MapFile.load(path);
+            pool.invoke(ForkJoinTask.adapt(() -> {
+                loaded.floorIndex().loadAll();
+                return null;
+            }));
+            assertEquals(expected, MapFileTest.describe(loaded), threads + " threads");
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void parallelSaveAndLoadRoundTrip() throws Exception {
+        for (int threads : new int[] {1, 4})
+            saveAndCompare(dir.resolve("spread" + threads + "." + MapFile.EXTENSION), threads);
+    }
+
+    @Test
+    void parallelCompressedSaveAndLoadRoundTrip() throws Exception {
+        for (int threads : new int[] {1, 4})
+            saveAndCompare(dir.resolve("spread" + threads + "." + MapFile.COMPRESSED_EXTENSION), threads);
+    }
+
+    // floors decoded one at a time as they're used come out the same as floors decoded together
+    @Test
+    void lazyAndParallelLoadsMatch() throws IOException {
+        Path path = dir.resolve("lazy." + MapFile.EXTENSION);
+        MapFile.save(spreadMap(), path);
+
+        GameMap lazy = MapFile.load(path);
+        for (int y = 2; y >= -1; y--)
+            assertNotNull(lazy.getFloor(y));
+        GameMap together = MapFile.load(path);
+        together.floorIndex().loadAll();
+        assertEquals(MapFileTest.describe(together), MapFileTest.describe(lazy));
+    }
+}
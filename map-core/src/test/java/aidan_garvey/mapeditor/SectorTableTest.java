@@ -0,0 +1,46 @@
+package aidan_garvey.mapeditor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SectorTableTest {
+    // removing and adding one sector over and over mustn't bring an old handle back to life
+    @Test
+    void handleStaysStaleAfterManyToggles() {
+        SectorTable table = new SectorTable();
+        Sector s = new Sector(0, 0, 0);
+        int first = table.add(s);
+        int handle = first;
+        for (int i = 0; i < 1000; i++) {
+            table.remove(handle);
+            handle = table.add(s);
+            assertNull(table.get(first));
+        }
+        assertSame(s, table.get(handle));
+    }
+
+    // freed slots are reused, oldest first, once enough of them are waiting
+    @Test
+    void freedSlotsAreReusedInOrder() {
+        SectorTable table = new SectorTable();
+        List<Integer> handles = new ArrayList<>();
+        for (int i = 0; i < SectorTable.MIN_FREE + 10; i++)
+            handles.add(table.add(new Sector(i, 0, 0)));
+        for (int h : handles)
+            table.remove(h);
+        int capacity = table.capacity();
+
+        for (int i = 0; i < 10; i++) {
+            Sector s = new Sector(i, 1, 0);
+            int h = table.add(s);
+            assertEquals(SectorTable.indexOf(handles.get(i)), SectorTable.indexOf(h));
+            assertSame(s, table.get(h));
+            assertNull(table.get(handles.get(i)));
+        }
+        assertEquals(capacity, table.capacity());
+    }
+}
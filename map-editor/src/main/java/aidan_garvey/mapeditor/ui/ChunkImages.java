@@ -0,0 +1,113 @@
+package aidan_garvey.mapeditor.ui;
+
+import aidan_garvey.mapeditor.Floor;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// pictures of whole chunks for drawing the floor zoomed out, where drawing every sector's walls costs more than
+// they're worth. Each chunk is drawn PIXELS pixels per sector from its outline (see SectorOutlines), with the walls one
+// pixel wide and empty sectors left transparent. A chunk is only drawn again when its outline is worked out again,
+// after the map reports damage to it, and the least recently used chunks are dropped once MAX_CHUNKS are kept
+final class ChunkImages {
+    static final int PIXELS = 16;
+    // one pixel more than the chunk, for the walls on its far edges, so line L of the chunk is pixel L * PIXELS
+    static final int IMAGE_SIZE = Floor.CHUNK_SIZE * PIXELS + 1;
+    private static final int MAX_CHUNKS = 64; // about 64MB, a few screens' worth at the smallest sector size
+
+    private static final class Entry {
+        WritableImage image;
+        SectorOutlines.Outline drawnFrom;
+    }
+
+    private final LinkedHashMap<Long, Entry> chunks = new LinkedHashMap<>(MAX_CHUNKS, 0.75f, true);
+    private final int[] pixels = new int[IMAGE_SIZE * IMAGE_SIZE];
+    private final int wallArgb, doorArgb;
+
+    private Floor floor; // what every image was drawn from, changing it starts the cache again
+
+    ChunkImages(Color wall, Color door) {
+        wallArgb = toArgb(wall);
+        doorArgb = toArgb(door);
+    }
+
+    void clear() {
+        chunks.clear();
+    }
+
+    // the picture of chunk (chunkZ, chunkX) with the given outline, drawn first if it's missing or was drawn from an
+    // older outline
+    Image get(Floor floor, int chunkZ, int chunkX, SectorOutlines.Outline outline) {
+        if (floor != this.floor) {
+            clear();
+            this.floor = floor;
+        }
+
+        long key = ((long) chunkZ << 32) | (chunkX & 0xFFFFFFFFL);
+        Entry e = chunks.get(key);
+        if (e != null && e.drawnFrom == outline)
+            return e.image;
+
+        if (e == null) {
+            e = new Entry();
+            e.image = takeImage();
+            chunks.put(key, e);
+        }
+        draw(outline, chunkZ << Floor.CHUNK_SHIFT, chunkX << Floor.CHUNK_SHIFT);
+        e.image.getPixelWriter().setPixels(0, 0, IMAGE_SIZE, IMAGE_SIZE,
+                PixelFormat.getIntArgbInstance(), pixels, 0, IMAGE_SIZE);
+        e.drawnFrom = outline;
+        return e.image;
+    }
+
+    private WritableImage takeImage() {
+        if (chunks.size() >= MAX_CHUNKS) {
+            Iterator<Map.Entry<Long, Entry>> eldest = chunks.entrySet().iterator();
+            WritableImage image = eldest.next().getValue().image;
+            eldest.remove();
+            return image;
+        }
+        return new WritableImage(IMAGE_SIZE, IMAGE_SIZE);
+    }
+
+    // draw the outline into pixels, doors first so walls are drawn over them
+    private void draw(SectorOutlines.Outline outline, int baseZ, int baseX) {
+        Arrays.fill(pixels, 0);
+
+        double[] doors = outline.doors();
+        for (int i = 0; i < doors.length; i += 4) {
+            int z1 = (int) Math.round((doors[i] - baseZ) * PIXELS);
+            int x1 = (int) Math.round((doors[i + 1] - baseX) * PIXELS);
+            int z2 = (int) Math.round((doors[i] + doors[i + 2] - baseZ) * PIXELS);
+            int x2 = (int) Math.round((doors[i + 1] + doors[i + 3] - baseX) * PIXELS);
+            for (int x = x1; x < x2; x++)
+                Arrays.fill(pixels, x * IMAGE_SIZE + z1, x * IMAGE_SIZE + z2, doorArgb);
+        }
+
+        int[] runs = outline.runs();
+        for (int i = 0; i < runs.length; i += 4) {
+            int z1 = (runs[i] - baseZ) * PIXELS, x1 = (runs[i + 1] - baseX) * PIXELS;
+            int z2 = (runs[i + 2] - baseZ) * PIXELS, x2 = (runs[i + 3] - baseX) * PIXELS;
+            // runs are either along a row or down a column
+            if (x1 == x2) {
+                Arrays.fill(pixels, x1 * IMAGE_SIZE + z1, x1 * IMAGE_SIZE + z2 + 1, wallArgb);
+            }
+            else {
+                for (int x = x1; x <= x2; x++)
+                    pixels[x * IMAGE_SIZE + z1] = wallArgb;
+            }
+        }
+    }
+
+    static int toArgb(Color c) {
+        return (int) Math.round(c.getOpacity() * 255) << 24 | (int) Math.round(c.getRed() * 255) << 16
+                | (int) Math.round(c.getGreen() * 255) << 8 | (int) Math.round(c.getBlue() * 255);
+    }
+}
@@ -1,4 +1,7 @@
-package aidan_garvey.mapeditor;
+package aidan_garvey.mapeditor.ui;
+
+import aidan_garvey.mapeditor.GameMap;
+import aidan_garvey.mapeditor.Sector;
 
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -227,10 +230,6 @@ public class DoorOptions extends VBox {
         keySelect.setText(gameMap.getDoorKey(currSector) == null ? NO_KEY : gameMap.getDoorKey(currSector));
 
         shootToOpenButton.setSelected(currSector != null && currSector.getDoorShootToOpen());
-
-        if (currSector != null) {
-            myController.setNeedsRefresh();
-        }
     }
 
     // attempt to add or remove a door in the current sector
@@ -360,7 +359,7 @@ public class DoorOptions extends VBox {
         keyChooser.getItems().add(NO_KEY); // include an option for no key
         keyChooser.getItems().addAll(gameMap.getKeys());
         // make the default choice the current key
-        String currKey = myController.getCurrSector().getDoorKey();
+        String currKey = gameMap.getDoorKey(myController.getCurrSector());
         keyChooser.setSelectedItem(currKey == null ? NO_KEY : currKey);
 
         // get the user's choice
@@ -372,19 +371,19 @@ public class DoorOptions extends VBox {
 
             // for no key, set the sector's key to null
             if (choice.equals(NO_KEY)) {
-                gameMap.setDoorKey(myController.getCurrSector(), null);
+                setDoorKey(null);
             }
 
             // for a new key, show a new dialog
             else if (choice.equals(NEW_KEY)) {
                 String newKey = makeNewKey();
                 if (newKey != null)
-                    gameMap.setDoorKey(myController.getCurrSector(), newKey);
+                    setDoorKey(newKey);
             }
 
             // otherwise, set the key name
             else {
-                gameMap.setDoorKey(myController.getCurrSector(), choice);
+                setDoorKey(choice);
             }
         }
 
@@ -392,6 +391,11 @@ public class DoorOptions extends VBox {
         myController.setIsModified();
     }
 
+    private void setDoorKey(String key) {
+        if (!gameMap.setDoorKey(myController.getCurrSector(), key))
+            System.err.println("ERROR: The selected sector has no door to lock");
+    }
+
     // prompt the user to create a new key for the door
     // add it to the map's list of keys
     // return null if unsuccessful
@@ -1,4 +1,4 @@
-package aidan_garvey.mapeditor;
+package aidan_garvey.mapeditor.ui;
 
 public enum DrawMode {
     SECTOR, TEXTURE, SURFACE
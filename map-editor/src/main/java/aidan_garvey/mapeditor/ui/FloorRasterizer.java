@@ -0,0 +1,238 @@
+package aidan_garvey.mapeditor.ui;
+
+import aidan_garvey.mapeditor.Floor;
+
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+// draws the floor view (background, grid lines, sectors and doors) on worker threads, for rendering in the background,
+// so the FX thread only has to show the finished image. A frame is cut into TILE_SIZE square tiles which are drawn in
+// parallel, each straight into the pixels of a PixelBuffer. Frames are drawn into one of two buffers while the other
+// is shown. Finished frames are passed back through the callback executor (Platform::runLater).
+// Frames are drawn one at a time: a frame requested while another is being drawn starts once that one has finished,
+// replacing any other frame waiting to start
+final class FloorRasterizer {
+    static final int TILE_SIZE = 128;
+
+    // everything a frame is drawn from, taken on the FX thread since the map is only read there. Sectors are drawn
+    // from the outlines of the chunks in view, which never change once they've been worked out (see SectorOutlines).
+    // chunks holds chunksWide chunks from (firstChunkZ, firstChunkX) for each row of chunks, and (left, top) is the
+    // floor pixel (sector coordinates times sector size) at the upper-left corner of the frame
+    record View(int width, int height, double sectorSize, double left, double top, int lineWidth,
+                boolean gridLinesShown, int firstChunkZ, int firstChunkX, int chunksWide,
+                SectorOutlines.Outline[] chunks) {}
+
+    static final class Frame {
+        final int width, height;
+        private final IntBuffer pixels;
+        private final PixelBuffer<IntBuffer> buffer;
+        final WritableImage image;
+        View view; // what the frame shows
+
+        private Frame(int width, int height) {
+            this.width = width;
+            this.height = height;
+            pixels = ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+            buffer = new PixelBuffer<>(width, height, pixels, PixelFormat.getIntArgbPreInstance());
+            image = new WritableImage(buffer);
+        }
+    }
+
+    private final Executor callbacks;
+    private final ForkJoinPool workers;
+    // every colour is opaque, so they're the same premultiplied
+    private final int backgroundArgb, gridArgb, wallArgb, doorArgb;
+
+    private Frame shown, spare;
+    private View requested; // the latest frame asked for
+    private boolean busy;
+    private Runnable queued; // the latest frame requested while busy
+
+    FloorRasterizer(Color background, Color grid, Color wall, Color door, Executor callbacks) {
+        this.callbacks = callbacks;
+        workers = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        backgroundArgb = ChunkImages.toArgb(background);
+        gridArgb = ChunkImages.toArgb(grid);
+        wallArgb = ChunkImages.toArgb(wall);
+        doorArgb = ChunkImages.toArgb(door);
+    }
+
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    // the last frame finished, null until the first one is
+    Frame getShown() {
+        return shown;
+    }
+
+    // has the latest frame asked for been drawn, or is it being drawn, with the camera in this place
+    boolean isRequested(int width, int height, double sectorSize, double left, double top, int lineWidth,
+                        boolean gridLinesShown) {
+        View v = requested;
+        return v != null && v.width() == width && v.height() == height && v.sectorSize() == sectorSize
+                && v.left() == left && v.top() == top && v.lineWidth() == lineWidth
+                && v.gridLinesShown() == gridLinesShown;
+    }
+
+    // done is given the frame once it's shown, through the callback executor
+    void request(View view, Consumer<Frame> done) {
+        requested = view;
+        if (busy) {
+            queued = () -> request(view, done);
+            return;
+        }
+
+        busy = true;
+        Frame frame = spare != null && spare.width == view.width() && spare.height == view.height()
+                ? spare : new Frame(view.width(), view.height());
+        spare = null;
+
+        workers.execute(() -> {
+            RuntimeException error = null;
+            try {
+                draw(frame, view);
+            }
+            // a frame that can't be drawn still has to end, or no frame would ever be drawn again
+            catch (RuntimeException e) {
+                error = e;
+            }
+
+            RuntimeException result = error;
+            callbacks.execute(() -> {
+                busy = false;
+                if (result == null) {
+                    // tell the image every pixel changed, which has to be done on the FX thread
+                    frame.buffer.updateBuffer(b -> null);
+                    frame.view = view;
+                    spare = shown;
+                    shown = frame;
+                    done.accept(frame);
+                }
+                else {
+                    // the last frame stays shown, and the next camera move or edit asks for another
+                    spare = frame;
+                    System.err.println("ERROR: Could not draw the floor in the background: " + result);
+                }
+
+                if (queued != null && !workers.isShutdown()) {
+                    Runnable next = queued;
+                    queued = null;
+                    next.run();
+                }
+            });
+        });
+    }
+
+    private void draw(Frame frame, View view) {
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int y = 0; y < view.height(); y += TILE_SIZE) {
+            for (int x = 0; x < view.width(); x += TILE_SIZE) {
+                int x1 = x, y1 = y;
+                int x2 = Math.min(x + TILE_SIZE, view.width()), y2 = Math.min(y + TILE_SIZE, view.height());
+                tasks.add(ForkJoinTask.adapt(() -> drawTile(frame.pixels, view, x1, y1, x2, y2)));
+            }
+        }
+        ForkJoinTask.invokeAll(tasks);
+    }
+
+    // draw frame pixels (x1, y1) to (x2, y2), exclusive, into out
+    private void drawTile(IntBuffer out, View v, int x1, int y1, int x2, int y2) {
+        Tile t = new Tile(x1, y1, x2, y2, backgroundArgb);
+        double s = v.sectorSize();
+        int lw = v.lineWidth();
+
+        // the sectors the tile covers, plus one either side for lines drawn on the edges
+        int sz1 = (int) Math.floor((v.left() + x1) / s) - 1, sz2 = (int) Math.floor((v.left() + x2) / s) + 1;
+        int sx1 = (int) Math.floor((v.top() + y1) / s) - 1, sx2 = (int) Math.floor((v.top() + y2) / s) + 1;
+
+        if (v.gridLinesShown()) {
+            for (int z = sz1; z <= sz2; z++)
+                t.line(toPixel(z, s, v.left()), y1, toPixel(z, s, v.left()), y2, lw, gridArgb);
+            for (int x = sx1; x <= sx2; x++)
+                t.line(x1, toPixel(x, s, v.top()), x2, toPixel(x, s, v.top()), lw, gridArgb);
+        }
+
+        // the chunks the tile covers, of the ones in the view
+        int chunksHigh = v.chunksWide() == 0 ? 0 : v.chunks().length / v.chunksWide();
+        int cz1 = Math.max(sz1 >> Floor.CHUNK_SHIFT, v.firstChunkZ());
+        int cz2 = Math.min(sz2 >> Floor.CHUNK_SHIFT, v.firstChunkZ() + v.chunksWide() - 1);
+        int cx1 = Math.max(sx1 >> Floor.CHUNK_SHIFT, v.firstChunkX());
+        int cx2 = Math.min(sx2 >> Floor.CHUNK_SHIFT, v.firstChunkX() + chunksHigh - 1);
+
+        // doors first, so walls are drawn over them
+        for (int cx = cx1; cx <= cx2; cx++) {
+            for (int cz = cz1; cz <= cz2; cz++) {
+                double[] doors = v.chunks()[(cx - v.firstChunkX()) * v.chunksWide() + cz - v.firstChunkZ()].doors();
+                for (int i = 0; i < doors.length; i += 4) {
+                    t.fill(toPixel(doors[i], s, v.left()), toPixel(doors[i + 1], s, v.top()),
+                            toPixel(doors[i] + doors[i + 2], s, v.left()),
+                            toPixel(doors[i + 1] + doors[i + 3], s, v.top()), doorArgb);
+                }
+            }
+        }
+        for (int cx = cx1; cx <= cx2; cx++) {
+            for (int cz = cz1; cz <= cz2; cz++) {
+                int[] runs = v.chunks()[(cx - v.firstChunkX()) * v.chunksWide() + cz - v.firstChunkZ()].runs();
+                for (int i = 0; i < runs.length; i += 4) {
+                    t.line(toPixel(runs[i], s, v.left()), toPixel(runs[i + 1], s, v.top()),
+                            toPixel(runs[i + 2], s, v.left()), toPixel(runs[i + 3], s, v.top()), lw, wallArgb);
+                }
+            }
+        }
+
+        for (int y = y1; y < y2; y++)
+            out.put(y * v.width() + x1, t.pixels, (y - y1) * t.width, t.width);
+    }
+
+    // frame pixel of a sector coordinate
+    private static int toPixel(double coord, double sectorSize, double origin) {
+        return (int) Math.floor(coord * sectorSize - origin);
+    }
+
+    // the pixels of one tile, which clips everything drawn to it
+    private static final class Tile {
+        final int x1, y1, x2, y2, width;
+        final int[] pixels;
+
+        Tile(int x1, int y1, int x2, int y2, int background) {
+            this.x1 = x1;
+            this.y1 = y1;
+            this.x2 = x2;
+            this.y2 = y2;
+            width = x2 - x1;
+            pixels = new int[width * (y2 - y1)];
+            Arrays.fill(pixels, background);
+        }
+
+        // fill frame pixels (fx1, fy1) to (fx2, fy2), exclusive
+        void fill(int fx1, int fy1, int fx2, int fy2, int argb) {
+            fx1 = Math.max(fx1, x1);
+            fy1 = Math.max(fy1, y1);
+            fx2 = Math.min(fx2, x2);
+            fy2 = Math.min(fy2, y2);
+            if (fx1 >= fx2)
+                return;
+            for (int y = fy1; y < fy2; y++)
+                Arrays.fill(pixels, (y - y1) * width + fx1 - x1, (y - y1) * width + fx2 - x1, argb);
+        }
+
+        // a horizontal or vertical line lineWidth pixels wide, centred on the line between the two points
+        void line(int fx1, int fy1, int fx2, int fy2, int lineWidth, int argb) {
+            int before = lineWidth / 2;
+            fill(fx1 - before, fy1 - before, fx2 - before + lineWidth, fy2 - before + lineWidth, argb);
+        }
+    }
+}
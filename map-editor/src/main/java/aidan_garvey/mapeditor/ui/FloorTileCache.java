@@ -0,0 +1,108 @@
+package aidan_garvey.mapeditor.ui;
+
+import aidan_garvey.mapeditor.Floor;
+
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.transform.Transform;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// pictures of the parts of the floor view that only change when the map does (background, grid lines, sector outlines
+// and doors), cut into TILE_SIZE square tiles of "floor pixels" (sector coordinates times the sector size) and kept
+// per zoom level. Panning only moves the tiles over the canvas, so it costs the same however much is on the floor.
+// tiles are dropped when the sectors under them change (see invalidate) and drawn again when next needed, and the
+// least recently used tiles are dropped once MAX_TILES are kept. Dropped tiles' images go to the tiles that replace them
+final class FloorTileCache {
+    static final int TILE_SIZE = 256;
+    private static final int MAX_TILES = 160; // about 40MB at a pixel scale of 1, a few screens' worth
+
+    // draws the static layer into gc, with floor pixel (left, top) at gc's origin
+    // may draw any sector up to one sector outside the tile, so lines on the tile's edges are drawn whole
+    interface Painter {
+        void paint(GraphicsContext gc, double left, double top);
+    }
+
+    private record Key(double sectorSize, int tileZ, int tileX) {}
+
+    // z1, x1, z2, x2 are the sectors that can be seen in the tile
+    private record Tile(WritableImage image, int z1, int x1, int z2, int x2) {}
+
+    private final LinkedHashMap<Key, Tile> tiles = new LinkedHashMap<>(MAX_TILES, 0.75f, true);
+    private final ArrayList<WritableImage> spare = new ArrayList<>(); // images of invalidated tiles
+    private final Canvas scratch = new Canvas(TILE_SIZE, TILE_SIZE);
+    private final SnapshotParameters params = new SnapshotParameters();
+
+    // what every tile was drawn from; changing any of them starts the cache again
+    private Floor floor;
+    private double pixelScale = 1;
+
+    FloorTileCache(Color background) {
+        params.setFill(background);
+    }
+
+    // forget every tile, for when something other than the floor's sectors changes what they show
+    void clear() {
+        tiles.clear();
+        spare.clear();
+    }
+
+    // drop the tiles, at every sector size, that show any sector with z1 <= z <= z2 and x1 <= x <= x2
+    void invalidate(int z1, int x1, int z2, int x2) {
+        Iterator<Tile> it = tiles.values().iterator();
+        while (it.hasNext()) {
+            Tile tile = it.next();
+            if (tile.z1 <= z2 && z1 <= tile.z2 && tile.x1 <= x2 && x1 <= tile.x2) {
+                spare.add(tile.image);
+                it.remove();
+            }
+        }
+    }
+
+    // the tile at (tileZ, tileX) in the grid of tiles at this sector size, which is drawn first if it's missing.
+    // The floor can be null, for a floor with no sectors yet
+    Image get(Floor floor, double sectorSize, double pixelScale, int tileZ, int tileX, Painter painter) {
+        if (floor != this.floor || pixelScale != this.pixelScale) {
+            clear();
+            this.floor = floor;
+            this.pixelScale = pixelScale;
+        }
+
+        Key key = new Key(sectorSize, tileZ, tileX);
+        Tile tile = tiles.get(key);
+        if (tile != null)
+            return tile.image;
+
+        double left = (double) tileZ * TILE_SIZE, top = (double) tileX * TILE_SIZE;
+        WritableImage image = takeImage();
+        painter.paint(scratch.getGraphicsContext2D(), left, top);
+        params.setTransform(Transform.scale(pixelScale, pixelScale));
+        scratch.snapshot(params, image);
+        tiles.put(key, new Tile(image,
+                (int) Math.floor(left / sectorSize) - 1, (int) Math.floor(top / sectorSize) - 1,
+                (int) Math.floor((left + TILE_SIZE) / sectorSize) + 1, (int) Math.floor((top + TILE_SIZE) / sectorSize) + 1));
+        return image;
+    }
+
+    // an image for a new tile, reusing an invalidated tile's, or the least recently used tile's if the cache is full
+    private WritableImage takeImage() {
+        int size = (int) Math.ceil(TILE_SIZE * pixelScale);
+        if (!spare.isEmpty())
+            return spare.remove(spare.size() - 1);
+        if (tiles.size() >= MAX_TILES) {
+            Iterator<Map.Entry<Key, Tile>> eldest = tiles.entrySet().iterator();
+            WritableImage image = eldest.next().getValue().image;
+            eldest.remove();
+            if (image.getWidth() == size)
+                return image;
+        }
+        return new WritableImage(size, size);
+    }
+}
@@ -1,5 +1,14 @@
-package aidan_garvey.mapeditor;
+package aidan_garvey.mapeditor.ui;
 
+import aidan_garvey.mapeditor.Direction;
+import aidan_garvey.mapeditor.GameMap;
+import aidan_garvey.mapeditor.MapExporter;
+import aidan_garvey.mapeditor.MapFile;
+import aidan_garvey.mapeditor.MapJournal;
+import aidan_garvey.mapeditor.MapSaver;
+import aidan_garvey.mapeditor.Sector;
+
+import javafx.application.Platform;
 import javafx.event.Event;
 import javafx.fxml.FXML;
 import javafx.geometry.Insets;
@@ -18,9 +27,9 @@ import javafx.stage.Window;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
 public class MapEdController {
     @FXML
@@ -104,6 +113,9 @@ public class MapEdController {
             adjVFlipButton
     ;
 
+    @FXML
+    private CheckMenuItem backgroundRenderingItem; // draw the map on worker threads instead of the FX thread
+
     @FXML
     private ImageView axisGuideBox; // displays the X and Z axes in the map editor, and the direction of North
 
@@ -162,11 +174,14 @@ public class MapEdController {
     private TileEdDraw tileEdDraw;
 
     private GameMap currMap;
+    private File currFile; // where the map was last opened from or saved to, null for new maps
     private Sector currSector;
 
     private final SurfaceModeOptions surfaceModeOptions;
     private final TextureModeOptions textureModeOptions;
     private final DoorOptions doorOptions;
+    private final MapSaver saver = new MapSaver(Platform::runLater);
+    private MapJournal journal; // records edits to currMap for crash recovery, null until the map has a file
 
     private double lastMouseX, lastMouseY;
     private boolean isDragging, shiftHeld;
@@ -287,8 +302,6 @@ public class MapEdController {
 
         // when mouse is released, treat it as a click or releasing the drag
         tileEdWrapper.setOnMouseReleased(mouseEvent -> {
-            needsRefresh = true; // make sure map will be redrawn next frame
-
             if (mouseEvent.getButton() == MouseButton.PRIMARY) {
                 // release mouse drag
                 if (isDragging) {
@@ -310,7 +323,6 @@ public class MapEdController {
                             tileEdDraw.deselectWalls();
                         // select closest wall to mouse (or deselect if already selected)
                         tileEdDraw.selectWall(mouseEvent.getX(), mouseEvent.getY());
-                        tileEdDraw.drawFloor();
 
                         textureModeOptions.setTextureModeOptions();
                     }
@@ -371,12 +383,16 @@ public class MapEdController {
             needsRefresh = true;
         });
 
-        // if needsRefresh was set to true, this will redraw the floor after the layouts are all calculated by JFX
+        // if needsRefresh was set to true, this will redraw the floor after the layouts are all calculated by JFX,
+        // otherwise only what changed in the map or the selection is drawn again
         stage.getScene().addPostLayoutPulseListener(() -> {
             if (needsRefresh) {
                 tileEdDraw.drawFloor();
                 needsRefresh = false;
             }
+            else {
+                tileEdDraw.drawDamage();
+            }
         });
     }
 
@@ -408,6 +424,8 @@ public class MapEdController {
     @FXML private void onNewFile() {
         // set name of file to "untitled"
         fileNameText.setText("untitled");
+        currFile = null;
+        discardJournal();
 
         // display "Modified" at bottom of the screen to tell user changes aren't saved
         setIsModified();
@@ -431,21 +449,176 @@ public class MapEdController {
     }
 
     @FXML private void onOpenFile() {
+        File file = mapFileChooser("Open Map").showOpenDialog(stage);
+        if (file == null)
+            return;
+
+        GameMap loaded;
+        try {
+            loaded = MapFile.load(file.toPath());
+        }
+        catch (IOException e) {
+            showFileError("Could not open " + file.getName(), e);
+            return;
+        }
+
+        currFile = file;
+        fileNameText.setText(file.getName());
+        modified = false;
+        modifiedText.setText("");
+        discardJournal();
+        openJournal(loaded, file);
+
+        currMap = loaded;
+        tileEdDraw.switchMap(currMap);
+        doorOptions.setGameMap(currMap);
 
+        currSector = null;
+        tileEdDraw.clearSelectedSector();
+        tileScrollPane.setContent(null);
+        currFloor = currMap.getFloorCount() > 0 ? currMap.getFloorNumber(0) : 0;
+        changeFloor();
     }
 
     @FXML private void onSaveFile() {
+        if (currFile == null)
+            onSaveAs();
+        else
+            saveMap(currFile);
+    }
+
+    @FXML private void onSaveAs() {
+        FileChooser chooser = mapFileChooser("Save Map As");
+        File file = chooser.showSaveDialog(stage);
+        if (file == null)
+            return;
+
+        // the extension picks the format, compressed for .gmapz
+        String name = file.getName();
+        if (!name.endsWith("." + MapFile.EXTENSION) && !name.endsWith("." + MapFile.COMPRESSED_EXTENSION)) {
+            boolean compressed = chooser.getSelectedExtensionFilter() == chooser.getExtensionFilters().get(1);
+            name += "." + (compressed ? MapFile.COMPRESSED_EXTENSION : MapFile.EXTENSION);
+            file = new File(file.getParentFile(), name);
+        }
+        saveMap(file);
+    }
 
+    @FXML private void onExport() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Export for Game");
+        chooser.getExtensionFilters().add(
+                new FileChooser.ExtensionFilter("Game Map Files", "*." + MapExporter.EXTENSION));
+        if (currFile != null && currFile.getParentFile() != null)
+            chooser.setInitialDirectory(currFile.getParentFile());
+        File file = chooser.showSaveDialog(stage);
+        if (file == null)
+            return;
+
+        if (!file.getName().endsWith("." + MapExporter.EXTENSION))
+            file = new File(file.getParentFile(), file.getName() + "." + MapExporter.EXTENSION);
+        try {
+            new MapExporter().export(currMap, file.toPath());
+        }
+        catch (IOException e) {
+            showFileError("Could not export " + file.getName(), e);
+        }
+    }
 
+    // the map is written in the background, so it can still be panned and edited while a large map saves
+    private void saveMap(File file) {
+        GameMap saving = currMap;
+        saving.compactFloors();
         modified = false;
-        modifiedText.setText("Changes Saved");
+        modifiedText.setText("Saving...");
+
+        saver.save(saving, file.toPath(), journal,
+                progress -> {
+                    // once the map is edited again, the label says so instead
+                    if (currMap == saving && !modified)
+                        modifiedText.setText(String.format("Saving... %d%%", (int) (progress * 100)));
+                },
+                error -> {
+                    if (error != null) {
+                        if (currMap == saving)
+                            setIsModified();
+                        showFileError("Could not save " + file.getName(), error);
+                    }
+                    else if (currMap == saving) {
+                        currFile = file;
+                        fileNameText.setText(file.getName());
+                        if (!modified)
+                            modifiedText.setText("Changes Saved");
+
+                        // a new map is journaled from its first save
+                        if (journal == null) {
+                            try {
+                                journal = MapJournal.createAfterSave(saving, file.toPath(), Platform::runLater);
+                            }
+                            catch (IOException e) {
+                                System.err.println("ERROR: Could not start edit journal: " + e.getMessage());
+                            }
+                        }
+                    }
+                });
     }
 
-    @FXML private void onSaveAs() {
+    // start journaling a map that was just opened, first offering to recover edits left in its journal if the
+    // editor closed before they were saved
+    private void openJournal(GameMap map, File file) {
+        try {
+            if (MapJournal.hasEdits(file.toPath())) {
+                Alert alert = new Alert(Alert.AlertType.CONFIRMATION,
+                        "This map has edits that weren't saved. Recover them?", ButtonType.YES, ButtonType.NO);
+                alert.setTitle("Recover Edits");
+                alert.setHeaderText(file.getName() + " was not closed properly");
+                if (alert.showAndWait().orElse(ButtonType.NO) == ButtonType.YES) {
+                    journal = MapJournal.recover(map, file.toPath(), Platform::runLater);
+                    setIsModified();
+                    modifiedText.setText("Recovered " + journal.getRecoveredCount() + " edits");
+                    return;
+                }
+            }
+            journal = MapJournal.create(map, file.toPath(), Platform::runLater);
+        }
+        catch (IOException e) {
+            showFileError("Could not start the edit journal for " + file.getName(), e);
+        }
+    }
+
+    // the map is being closed, and anything not saved by now is thrown away (the editor doesn't ask), so the journal
+    // goes with it; only a crash leaves a journal behind to recover from
+    private void discardJournal() {
+        if (journal != null) {
+            journal.discard();
+            journal = null;
+        }
+    }
 
+    // called when the application closes, so a save in progress isn't cut off
+    public void shutdown() {
+        discardJournal();
+        saver.shutdown();
+        tileEdDraw.shutdown();
+    }
 
-        modified = false;
-        modifiedText.setText("Changes Saved");
+    private FileChooser mapFileChooser(String title) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(title);
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Map Files", "*." + MapFile.EXTENSION),
+                new FileChooser.ExtensionFilter("Compressed Map Files", "*." + MapFile.COMPRESSED_EXTENSION));
+        if (currFile != null && currFile.getParentFile() != null) {
+            chooser.setInitialDirectory(currFile.getParentFile());
+            chooser.setInitialFileName(currFile.getName());
+        }
+        return chooser;
+    }
+
+    private void showFileError(String header, IOException e) {
+        Alert alert = new Alert(Alert.AlertType.ERROR, e.getMessage());
+        alert.setTitle("Error");
+        alert.setHeaderText(header);
+        alert.showAndWait();
     }
 
     @FXML private void onExit() {
@@ -465,7 +638,6 @@ public class MapEdController {
         currSector = null;
         tileEdDraw.clearSelectedSector();
         tileScrollPane.setContent(null);
-        tileEdDraw.drawFloor();
 
         setIsModified();
     }
@@ -827,6 +999,11 @@ public class MapEdController {
         setIsModified();
     }
 
+    @FXML private void toggleBackgroundRendering() {
+        tileEdDraw.setBackgroundRendering(backgroundRenderingItem.isSelected());
+        needsRefresh = true;
+    }
+
     @FXML private void toggleGridLines() {
         if (tileEdDraw.getGridLinesShown()) {
             gridLinesButton.setText("Show Grid Lines");
@@ -1038,11 +1215,12 @@ public class MapEdController {
 
         // Sector currSector = tileEdDraw.getCurrSector();
 
+        // all walls are in the same sector, so texture ids can be compared directly
         boolean match = true;
-        String firstTex = currSector.getMainTexture(walls.get(0));
+        short firstTex = currSector.getMainTextureId(walls.get(0));
 
         for (Direction d : walls) {
-            if (!Objects.equals(firstTex, currSector.getMainTexture(d)))
+            if (firstTex != currSector.getMainTextureId(d))
                 match = false;
         }
 
@@ -1055,11 +1233,12 @@ public class MapEdController {
 
         // Sector currSector = tileEdDraw.getCurrSector();
 
+        // all walls are in the same sector, so texture ids can be compared directly
         boolean match = true;
-        String firstTex = currSector.getAdjTexture(walls.get(0));
+        short firstTex = currSector.getAdjTextureId(walls.get(0));
 
         for (Direction d : walls) {
-            if (!Objects.equals(firstTex, currSector.getAdjTexture(d)))
+            if (firstTex != currSector.getAdjTextureId(d))
                 match = false;
         }
 
@@ -1,4 +1,4 @@
-package aidan_garvey.mapeditor;
+package aidan_garvey.mapeditor.ui;
 
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
@@ -11,6 +11,8 @@ public class MapEditor extends Application {
 
     private static int DEFAULT_WIDTH = 1200, DEFAULT_HEIGHT = 675;
 
+    private MapEdController mec;
+
     @Override
     public void start(Stage stage) throws IOException {
 
@@ -19,7 +21,7 @@ public class MapEditor extends Application {
         stage.setTitle("Map Editor");
         stage.setScene(mainScene);
 
-        MapEdController mec = mapEdLoader.getController();
+        mec = mapEdLoader.getController();
         mec.setStage(stage);
 
         stage.show();
@@ -27,6 +29,11 @@ public class MapEditor extends Application {
         mec.newFile();
     }
 
+    @Override
+    public void stop() {
+        mec.shutdown();
+    }
+
     public static void main(String[] args) {
         launch();
     }
@@ -0,0 +1,149 @@
+package aidan_garvey.mapeditor.ui;
+
+import aidan_garvey.mapeditor.Direction;
+import aidan_garvey.mapeditor.Floor;
+import aidan_garvey.mapeditor.Sector;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.WeakHashMap;
+
+// the outlines of the sectors on each floor, worked out one chunk (see Floor.CHUNK_SIZE) at a time and kept until the
+// map reports damage to the chunk. Walls that aren't adjoined are merged into runs along each grid line, so a row of
+// sectors is one line instead of a line per sector, and a chunk is drawn as one path for its walls and one for its doors
+final class SectorOutlines {
+    private static final int N = Floor.CHUNK_SIZE;
+
+    // runs are {z1, x1, z2, x2} in sector coordinates, one after another
+    // doors are {z, x, width, height} in sector coordinates, one after another
+    record Outline(int[] runs, double[] doors) {}
+
+    private static final Outline EMPTY = new Outline(new int[0], new double[0]);
+
+    // floors are only weakly held, so floors removed from the map are forgotten with their outlines
+    private final WeakHashMap<Floor, HashMap<Long, Outline>> floors = new WeakHashMap<>();
+
+    void clear() {
+        floors.clear();
+    }
+
+    // work out the chunks with any sector with z1 <= z <= z2 and x1 <= x <= x2 again when they're next drawn
+    void invalidate(Floor floor, int z1, int x1, int z2, int x2) {
+        HashMap<Long, Outline> chunks = floor == null ? null : floors.get(floor);
+        if (chunks == null)
+            return;
+        for (int cx = x1 >> Floor.CHUNK_SHIFT; cx <= x2 >> Floor.CHUNK_SHIFT; cx++) {
+            for (int cz = z1 >> Floor.CHUNK_SHIFT; cz <= z2 >> Floor.CHUNK_SHIFT; cz++)
+                chunks.remove(key(cz, cx));
+        }
+    }
+
+    // the outline of the sectors in chunk (chunkZ, chunkX)
+    Outline get(Floor floor, int chunkZ, int chunkX) {
+        HashMap<Long, Outline> chunks = floors.computeIfAbsent(floor, f -> new HashMap<>());
+        long key = key(chunkZ, chunkX);
+        Outline o = chunks.get(key);
+        if (o == null) {
+            o = build(floor, chunkZ, chunkX);
+            // chunks with nothing in them cost next to nothing to check again, and there's no end to them
+            if (o != EMPTY)
+                chunks.put(key, o);
+        }
+        return o;
+    }
+
+    private static long key(int chunkZ, int chunkX) {
+        return ((long) chunkZ << 32) | (chunkX & 0xFFFFFFFFL);
+    }
+
+    private static Outline build(Floor floor, int chunkZ, int chunkX) {
+        int baseZ = chunkZ << Floor.CHUNK_SHIFT, baseX = chunkX << Floor.CHUNK_SHIFT;
+
+        // one flag per sector-long edge that's drawn: rows[x * N + z] is the edge from (z, x) to (z + 1, x), and
+        // columns[z * N + x] the edge from (z, x) to (z, x + 1), for the N + 1 grid lines each way across the chunk
+        boolean[] rows = new boolean[(N + 1) * N];
+        boolean[] columns = new boolean[(N + 1) * N];
+        double[] doors = new double[N * N * 4];
+        int[] doorCount = {0};
+
+        floor.forEachInRect(baseZ, baseX, baseZ + N - 1, baseX + N - 1, s -> {
+            int z = s.getZPos() - baseZ, x = s.getXPos() - baseX;
+            if (!s.getWallAdjoin(Direction.NORTH))
+                rows[x * N + z] = true;
+            if (!s.getWallAdjoin(Direction.SOUTH))
+                rows[(x + 1) * N + z] = true;
+            if (!s.getWallAdjoin(Direction.WEST))
+                columns[z * N + x] = true;
+            if (!s.getWallAdjoin(Direction.EAST))
+                columns[(z + 1) * N + x] = true;
+
+            if (s.hasDoor()) {
+                addDoor(doors, doorCount[0], s);
+                doorCount[0] += 4;
+            }
+        });
+
+        // at most every other edge on a line starts a run
+        int[] runs = new int[2 * (N + 1) * (N / 2 + 1) * 4];
+        int runCount = 0;
+        for (int line = 0; line <= N; line++) {
+            for (int from = 0, to; from < N; from = to) {
+                to = from + 1;
+                if (!rows[line * N + from])
+                    continue;
+                while (to < N && rows[line * N + to])
+                    to++;
+                runs[runCount++] = baseZ + from;
+                runs[runCount++] = baseX + line;
+                runs[runCount++] = baseZ + to;
+                runs[runCount++] = baseX + line;
+            }
+            for (int from = 0, to; from < N; from = to) {
+                to = from + 1;
+                if (!columns[line * N + from])
+                    continue;
+                while (to < N && columns[line * N + to])
+                    to++;
+                runs[runCount++] = baseZ + line;
+                runs[runCount++] = baseX + from;
+                runs[runCount++] = baseZ + line;
+                runs[runCount++] = baseX + to;
+            }
+        }
+
+        if (runCount == 0 && doorCount[0] == 0)
+            return EMPTY;
+        return new Outline(Arrays.copyOf(runs, runCount), Arrays.copyOf(doors, doorCount[0]));
+    }
+
+    // the door is a sixteenth of a sector thick, against the north or east wall, in the middle, or against the south
+    // or west wall depending on its position
+    private static void addDoor(double[] doors, int i, Sector s) {
+        double width = s.doorIsNorthSouth() ? 1 / 16.0 : 1;
+        double height = s.doorIsNorthSouth() ? 1 : 1 / 16.0;
+
+        double zStart = 0, xStart = 0;
+        // door is in the north or east
+        if (s.getDoorPos() == 0) {
+            if (s.doorIsNorthSouth())
+                zStart = 15.0 / 16.0;
+        }
+        // door is in middle of sector
+        else if (s.getDoorPos() == 1) {
+            if (s.doorIsNorthSouth())
+                zStart = 15.0 / 32.0;
+            else
+                xStart = 15.0 / 32.0;
+        }
+        // door is in the south or west
+        else if (s.getDoorPos() == 2) {
+            if (!s.doorIsNorthSouth())
+                xStart = 15.0 / 16.0;
+        }
+
+        doors[i] = s.getZPos() + zStart;
+        doors[i + 1] = s.getXPos() + xStart;
+        doors[i + 2] = width;
+        doors[i + 3] = height;
+    }
+}
@@ -1,4 +1,6 @@
-package aidan_garvey.mapeditor;
+package aidan_garvey.mapeditor.ui;
+
+import aidan_garvey.mapeditor.Corner;
 
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -205,6 +207,7 @@ public class SurfaceModeOptions extends VBox {
             int[] offsets = myController.getCurrSector().getCeilingOffsets();
             offsets[NORTH_EAST.index] = newVal - CEIL_H_BASE;
             correctOffsets(offsets, NORTH_EAST);
+            myController.getCurrSector().setCeilingOffsets(offsets);
             refreshCeilingMesh(offsets);
             setCeilingSpinners(offsets);
         });
@@ -212,6 +215,7 @@ public class SurfaceModeOptions extends VBox {
             int[] offsets = myController.getCurrSector().getCeilingOffsets();
             offsets[NORTH_WEST.index] = newVal - CEIL_H_BASE;
             correctOffsets(offsets, NORTH_WEST);
+            myController.getCurrSector().setCeilingOffsets(offsets);
             refreshCeilingMesh(offsets);
             setCeilingSpinners(offsets);
         });
@@ -219,6 +223,7 @@ public class SurfaceModeOptions extends VBox {
             int[] offsets = myController.getCurrSector().getCeilingOffsets();
             offsets[SOUTH_EAST.index] = newVal - CEIL_H_BASE;
             correctOffsets(offsets, SOUTH_EAST);
+            myController.getCurrSector().setCeilingOffsets(offsets);
             refreshCeilingMesh(offsets);
             setCeilingSpinners(offsets);
         });
@@ -226,6 +231,7 @@ public class SurfaceModeOptions extends VBox {
             int[] offsets = myController.getCurrSector().getCeilingOffsets();
             offsets[SOUTH_WEST.index] = newVal - CEIL_H_BASE;
             correctOffsets(offsets, SOUTH_WEST);
+            myController.getCurrSector().setCeilingOffsets(offsets);
             refreshCeilingMesh(offsets);
             setCeilingSpinners(offsets);
         });
@@ -233,6 +239,7 @@ public class SurfaceModeOptions extends VBox {
             int[] offsets = myController.getCurrSector().getCeilingOffsets();
             offsets[CENTER.index] = newVal - CEIL_H_BASE;
             correctOffsets(offsets, CENTER);
+            myController.getCurrSector().setCeilingOffsets(offsets);
             refreshCeilingMesh(offsets);
             setCeilingSpinners(offsets);
         });
@@ -241,6 +248,7 @@ public class SurfaceModeOptions extends VBox {
             int[] offsets = myController.getCurrSector().getFloorOffsets();
             offsets[NORTH_EAST.index] = newVal - FLOOR_H_BASE;
             correctOffsets(offsets, NORTH_EAST);
+            myController.getCurrSector().setFloorOffsets(offsets);
             refreshFloorMesh(offsets);
             setFloorSpinners(offsets);
         });
@@ -248,6 +256,7 @@ public class SurfaceModeOptions extends VBox {
             int[] offsets = myController.getCurrSector().getFloorOffsets();
             offsets[NORTH_WEST.index] = newVal - FLOOR_H_BASE;
             correctOffsets(offsets, NORTH_WEST);
+            myController.getCurrSector().setFloorOffsets(offsets);
             refreshFloorMesh(offsets);
             setFloorSpinners(offsets);
         });
@@ -255,6 +264,7 @@ public class SurfaceModeOptions extends VBox {
             int[] offsets = myController.getCurrSector().getFloorOffsets();
             offsets[SOUTH_EAST.index] = newVal - FLOOR_H_BASE;
             correctOffsets(offsets, SOUTH_EAST);
+            myController.getCurrSector().setFloorOffsets(offsets);
             refreshFloorMesh(offsets);
             setFloorSpinners(offsets);
         });
@@ -262,6 +272,7 @@ public class SurfaceModeOptions extends VBox {
             int[] offsets = myController.getCurrSector().getFloorOffsets();
             offsets[SOUTH_WEST.index] = newVal - FLOOR_H_BASE;
             correctOffsets(offsets, SOUTH_WEST);
+            myController.getCurrSector().setFloorOffsets(offsets);
             refreshFloorMesh(offsets);
             setFloorSpinners(offsets);
         });
@@ -269,6 +280,7 @@ public class SurfaceModeOptions extends VBox {
             int[] offsets = myController.getCurrSector().getFloorOffsets();
             offsets[CENTER.index] = newVal - FLOOR_H_BASE;
             correctOffsets(offsets, CENTER);
+            myController.getCurrSector().setFloorOffsets(offsets);
             refreshFloorMesh(offsets);
             setFloorSpinners(offsets);
         });
@@ -1,4 +1,8 @@
-package aidan_garvey.mapeditor;
+package aidan_garvey.mapeditor.ui;
+
+import aidan_garvey.mapeditor.Direction;
+import aidan_garvey.mapeditor.Sector;
+import aidan_garvey.mapeditor.WallSelection;
 
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -12,8 +16,6 @@ import javafx.scene.text.Text;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Objects;
 
 public class TextureModeOptions extends VBox {
@@ -139,40 +141,54 @@ public class TextureModeOptions extends VBox {
 
     public void setTextureModeOptions() {
         // get all the currently selected walls
-        HashMap<Sector, List<Direction>> currWalls = tileEdDraw.getCurrWalls();
+        WallSelection currWalls = tileEdDraw.getCurrWalls();
         int numWalls = setTextureNames(currWalls);
 
         wallsSelectedCount.setText(String.format("Walls Selected: %d", numWalls));
     }
 
-    private int setTextureNames(HashMap<Sector, List<Direction>> walls) {
+    private int setTextureNames(WallSelection walls) {
         Boolean mainMatch = null, adjMatch = null;
-        String firstMain = null, firstAdj = null;
+        Sector firstSector = null;
+        Direction firstWall = null;
 
         int count = 0;
 
-        for (Sector s : walls.keySet()) {
-            for (Direction d : walls.get(s)) {
+        for (int i = 0; i < walls.sectorCount(); i++) {
+            Sector s = walls.sectorAt(i);
+            if (s == null)
+                continue;
+
+            for (Direction d : Direction.values()) {
+                if (!walls.hasWall(i, d))
+                    continue;
+
                 ++count;
 
-                if (mainMatch == null) {
-                    mainMatch = true;
-                    firstMain = s.getMainTexture(d);
+                if (firstSector == null) {
+                    firstSector = s;
+                    firstWall = d;
+                    mainMatch = adjMatch = true;
                 }
-                else if (mainMatch && !Objects.equals(firstMain, s.getMainTexture(d))) {
-                    mainMatch = false;
+                // sectors in the same map share a palette, so their texture ids can be compared directly
+                else if (firstSector.sharesPalette(s)) {
+                    if (mainMatch && firstSector.getMainTextureId(firstWall) != s.getMainTextureId(d))
+                        mainMatch = false;
+                    if (adjMatch && firstSector.getAdjTextureId(firstWall) != s.getAdjTextureId(d))
+                        adjMatch = false;
                 }
-
-                if (adjMatch == null) {
-                    adjMatch = true;
-                    firstAdj = s.getAdjTexture(d);
-                }
-                else if (adjMatch && !Objects.equals(firstAdj, s.getAdjTexture(d))) {
-                    adjMatch = false;
+                else {
+                    if (mainMatch && !Objects.equals(firstSector.getMainTexture(firstWall), s.getMainTexture(d)))
+                        mainMatch = false;
+                    if (adjMatch && !Objects.equals(firstSector.getAdjTexture(firstWall), s.getAdjTexture(d)))
+                        adjMatch = false;
                 }
             }
         }
 
+        String firstMain = firstSector == null ? null : firstSector.getMainTexture(firstWall);
+        String firstAdj = firstSector == null ? null : firstSector.getAdjTexture(firstWall);
+
         if (mainMatch == null || !mainMatch) {
             mainFileName.setText(MapEdController.TEXTURE_NA);
         }
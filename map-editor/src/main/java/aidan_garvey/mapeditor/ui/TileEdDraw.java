@@ -0,0 +1,676 @@
+package aidan_garvey.mapeditor.ui;
+
+import aidan_garvey.mapeditor.Direction;
+import aidan_garvey.mapeditor.Floor;
+import aidan_garvey.mapeditor.GameMap;
+import aidan_garvey.mapeditor.Sector;
+import aidan_garvey.mapeditor.WallSelection;
+
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+
+import java.util.ArrayList;
+
+public class TileEdDraw {
+    private static final double
+        MIN_SECTOR_SIZE = 16,
+        MAX_SECTOR_SIZE = 256,
+        MIN_LINE_WEIGHT = 0.5,
+        MAX_LINE_WEIGHT = 2,
+        DEFAULT_ZOOM = 0.5,
+        START_H_OFFSET = -7.5,
+        START_V_OFFSET = -3.5,
+        LOD_SECTOR_SIZE = 24; // below this, sectors are drawn from pictures of whole chunks
+
+    // more damaged rectangles than this in one frame are drawn as one full redraw
+    private static final int MAX_DAMAGE = 32;
+
+    private static final Color
+        STROKE_SELECTEDSECTOR = Color.YELLOW,
+        STROKE_SECTOR = Color.web("0xFF0000"),
+        STROKE_GRIDLINE = Color.web("0x300000"),
+        FILL_BACKGROUND = Color.BLACK,
+        STROKE_SELECTEDWALL = Color.WHITE,
+        FILL_DOOR = Color.web("0x4080FF");
+
+    private boolean gridLinesShown;
+
+    private double camZ, camX, zoom;
+
+    private int floorIndex;
+
+    private GameMap gameMap;
+
+    private final Canvas canvas;
+
+    private Sector currSector;
+    private WallSelection currWalls;
+
+    // the grid, sectors and doors, which panning and selecting don't change
+    private final FloorTileCache tileCache = new FloorTileCache(FILL_BACKGROUND);
+    private double lastSectorSize; // sector size of the last frame drawn
+    private final SectorOutlines outlines = new SectorOutlines(); // what's drawn into the tiles
+    private final ChunkImages chunkImages = new ChunkImages(STROKE_SECTOR, FILL_DOOR); // the same, zoomed out
+
+    // draws the grid, sectors and doors on worker threads instead, when rendering in the background (null when not)
+    private FloorRasterizer rasterizer;
+    private boolean rasterStale; // the floor changed since the last frame was asked for
+
+    // sectors of the current floor to draw again at the next drawDamage, as {z1, x1, z2, x2}
+    private final ArrayList<int[]> damage = new ArrayList<>();
+    private boolean damagedAll; // too much damage to keep track of, the whole floor is drawn again
+
+    private DrawMode drawMode;
+
+    public TileEdDraw(Canvas c) {
+        canvas = c;
+        floorIndex = 0;
+        currSector = null;
+        gameMap = null;
+        currWalls = null;
+
+        gridLinesShown = true;
+        drawMode = DrawMode.SECTOR;
+
+        camZ = START_H_OFFSET;
+        camX = START_V_OFFSET;
+        zoom = DEFAULT_ZOOM;
+    }
+
+    public void setDrawMode(DrawMode d) {
+        drawMode = d;
+    }
+
+    public DrawMode getDrawMode() {
+        return drawMode;
+    }
+
+    public void deselectWalls() {
+        for (int i = 0; i < currWalls.sectorCount(); i++)
+            damage(currWalls.sectorAt(i));
+        currWalls.clear();
+    }
+
+    public WallSelection getCurrWalls() {
+        return currWalls;
+    }
+
+    public void selectWall(double mouseX, double mouseY) {
+        Sector s = getClickSector(mouseX, mouseY);
+
+        if (s != null) {
+            Direction w = getClickWall(mouseX, mouseY);
+
+            // select the wall, or deselect it if it was already selected
+            currWalls.toggle(s, w);
+            damage(s);
+        }
+    }
+
+    public void moveCamH(double h) {
+        camZ += h / calcSectorSize();
+    }
+
+    public void moveCamV(double v) {
+        camX += v / calcSectorSize();
+    }
+
+    public void changeZoom(double amount) {
+        double canvasW = canvas.getWidth();
+        double canvasH = canvas.getHeight();
+
+        // find current size of screen in sectors
+        double oldWidth = canvasW / calcSectorSize();
+        double oldHeight = canvasH / calcSectorSize();
+
+        zoom += amount;
+        // ensure range is [0, 1]
+        zoom = Math.max(0, zoom);
+        zoom = Math.min(1, zoom);
+
+        // get new size of screen in sectors
+        double newWidth = canvasW / calcSectorSize();
+        double newHeight = canvasH / calcSectorSize();
+
+        // move camera by half of difference in canvas size, so we zoom in on the centre and not the top left
+        camZ += (oldWidth - newWidth) / 2d;
+        camX += (oldHeight - newHeight) / 2d;
+
+        drawFloor();
+    }
+
+    public void switchMap(GameMap m) {
+        if (gameMap != null)
+            gameMap.setDamageListener(null);
+        m.setDamageListener(this::mapDamaged);
+        gameMap = m;
+        currSector = null;
+        currWalls = new WallSelection(m);
+        tileCache.clear();
+        outlines.clear();
+        chunkImages.clear();
+        rasterStale = true;
+    }
+
+    public void switchFloor(int flIndex) {
+        floorIndex = flIndex;
+        // decode the floor now if it's still waiting in the map file
+        gameMap.getFloor(flIndex);
+        currSector = null;
+        rasterStale = true;
+    }
+
+    public Sector selectSector(double mouseX, double mouseY)
+    {
+        damage(currSector);
+
+        Sector newSelection = getClickSector(mouseX, mouseY);
+        if (newSelection != null)
+        {
+            currSector = newSelection;
+        }
+        else
+        {
+            currSector = new Sector((int)Math.floor(getMouseZIndex(mouseX)), (int)Math.floor(getMouseXIndex(mouseY)), floorIndex);
+        }
+
+        damage(currSector);
+
+        return newSelection;
+    }
+
+    public Sector getClickSector(double mouseX, double mouseY) {
+        // determine coordinates of map that were clicked
+        double zIndex = getMouseZIndex(mouseX);
+        double xIndex = getMouseXIndex(mouseY);
+
+        // System.out.println("Camera: " + camZ + ", " + camX + "\nClick Index: " + zIndex + ", " + xIndex);
+
+        boolean exists = sectorExists(zIndex, xIndex);
+
+        // if sector exists at location, return it
+        if (exists) {
+            return getSector(zIndex, xIndex);
+        }
+        // if sector does not exist at location, return null
+        else {
+            return null;
+        }
+    }
+
+    public Direction getClickWall(double mouseX, double mouseY) {
+        Sector s = getClickSector(mouseX, mouseY);
+
+        if (s == null) {
+            return null;
+        }
+
+        // distance from click to north, east, south, west walls
+        double[] cardinalDist = {getMouseXIndex(mouseY) - s.getXPos(), s.getZPos() + 1 - getMouseZIndex(mouseX), 0, 0};
+        cardinalDist[2] = 1 - cardinalDist[0];
+        cardinalDist[3] = 1 - cardinalDist[1];
+
+        int leastIndex = 0;
+
+        for (int i = 1; i < 4; i++) {
+            if (cardinalDist[i] < cardinalDist[leastIndex])
+                leastIndex = i;
+        }
+
+        Direction closest;
+
+        switch (leastIndex) {
+            case 1 -> closest = Direction.EAST;
+            case 2 -> closest = Direction.SOUTH;
+            case 3 -> closest = Direction.WEST;
+            default -> closest = Direction.NORTH;
+        }
+
+        return closest;
+    }
+
+    public double getMouseZIndex(double mouseX) {
+        return (mouseX / calcSectorSize()) + camZ;
+    }
+
+    public double getMouseXIndex(double mouseY) {
+        return (mouseY / calcSectorSize()) + camX;
+    }
+
+    public void clearSelectedSector() {
+        damage(currSector);
+        currSector = null;
+    }
+
+    // the map changed some sectors, which have to be drawn into the tiles again
+    private void mapDamaged(int y, int z1, int x1, int z2, int x2) {
+        outlines.invalidate(gameMap.getFloor(y), z1, x1, z2, x2);
+        if (y != floorIndex)
+            return;
+        tileCache.invalidate(z1, x1, z2, x2);
+        rasterStale = true;
+        damage(z1, x1, z2, x2);
+    }
+
+    private void damage(Sector s) {
+        if (s != null && s.getYPos() == floorIndex)
+            damage(s.getZPos(), s.getXPos(), s.getZPos(), s.getXPos());
+    }
+
+    // draw the sectors with z1 <= z <= z2 and x1 <= x <= x2 again in the next frame
+    private void damage(int z1, int x1, int z2, int x2) {
+        if (damagedAll)
+            return;
+        if (damage.size() == MAX_DAMAGE) {
+            damage.clear();
+            damagedAll = true;
+        }
+        else {
+            damage.add(new int[] {z1, x1, z2, x2});
+        }
+        // make sure there is a next frame, even if nothing else in the scene changed
+        Platform.requestNextPulse();
+    }
+
+    public void applyMainTexture(String tex) {
+        for (int i = 0; i < currWalls.sectorCount(); i++) {
+            Sector s = currWalls.sectorAt(i);
+            if (s == null)
+                continue;
+
+            for (Direction d : Direction.values()) {
+                if (currWalls.hasWall(i, d))
+                    s.setMainTexture(d, tex);
+            }
+        }
+    }
+
+    public void applyAdjTexture(String tex) {
+        for (int i = 0; i < currWalls.sectorCount(); i++) {
+            Sector s = currWalls.sectorAt(i);
+            if (s == null)
+                continue;
+
+            for (Direction d : Direction.values()) {
+                if (currWalls.hasWall(i, d))
+                    s.setAdjTexture(d, tex);
+            }
+        }
+    }
+
+    public void clear() {
+        canvas.getGraphicsContext2D().setFill(FILL_BACKGROUND);
+        canvas.getGraphicsContext2D().fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+    }
+
+    public void setGridLinesShown(boolean isShown) {
+        gridLinesShown = isShown;
+        tileCache.clear();
+        rasterStale = true;
+    }
+
+    public boolean getGridLinesShown() {
+        return gridLinesShown;
+    }
+
+    // draw the floor on worker threads, showing the last frame drawn until the next is ready, so the editor stays
+    // responsive while a big floor is drawn
+    public void setBackgroundRendering(boolean on) {
+        if (on && rasterizer == null) {
+            rasterizer = new FloorRasterizer(FILL_BACKGROUND, STROKE_GRIDLINE, STROKE_SECTOR, FILL_DOOR,
+                    Platform::runLater);
+            rasterStale = true;
+        }
+        else if (!on && rasterizer != null) {
+            rasterizer.shutdown();
+            rasterizer = null;
+            lastSectorSize = 0;
+        }
+    }
+
+    public boolean getBackgroundRendering() {
+        return rasterizer != null;
+    }
+
+    // called when the application closes
+    public void shutdown() {
+        setBackgroundRendering(false);
+    }
+
+    // public void drawFloor(double z, double x, double zoom) {
+    public void drawFloor() {
+        assert zoom >= 0 && zoom <= 1;
+
+        double sectorSize = calcSectorSize();
+
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        Floor currFloor = gameMap.getFloor(floorIndex);
+
+        // floor pixel (sector coordinates times sector size) at the upper-left corner of the canvas, rounded so the
+        // cached tiles land on whole pixels
+        double left = Math.floor(camZ * sectorSize);
+        double top = Math.floor(camX * sectorSize);
+
+        damage.clear();
+        damagedAll = false;
+
+        // clear canvas before drawing over it
+        clear();
+
+        if (rasterizer != null) {
+            drawFrame(gc, currFloor, sectorSize, left, top);
+        }
+        // while zooming, every frame is at a new size, so tiles are only made once the zoom stays the same
+        else if (sectorSize != lastSectorSize) {
+            lastSectorSize = sectorSize;
+            drawStaticLayer(gc, currFloor, sectorSize, left, top, canvas.getWidth(), canvas.getHeight());
+        }
+        else {
+            drawTiles(gc, currFloor, sectorSize, left, top, 0, 0, canvas.getWidth(), canvas.getHeight());
+        }
+
+        drawSelection(gc, sectorSize, left, top);
+    }
+
+    // draw only the sectors that changed since the last frame, or everything if the camera moved since then
+    public void drawDamage() {
+        if (damagedAll || (!damage.isEmpty() && rasterizer == null && calcSectorSize() != lastSectorSize)) {
+            drawFloor();
+            return;
+        }
+
+        double sectorSize = calcSectorSize();
+
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        Floor currFloor = gameMap.getFloor(floorIndex);
+
+        double left = Math.floor(camZ * sectorSize);
+        double top = Math.floor(camX * sectorSize);
+        // lines on a sector's edges spill half their width over the sectors around it
+        double margin = Math.ceil(calcLineWeight());
+
+        for (int[] rect : damage) {
+            // the damaged sectors in canvas pixels, on whole pixels so nothing outside is touched
+            double x1 = Math.max(0, Math.floor(rect[0] * sectorSize - left - margin));
+            double y1 = Math.max(0, Math.floor(rect[1] * sectorSize - top - margin));
+            double x2 = Math.min(canvas.getWidth(), Math.ceil((rect[2] + 1) * sectorSize - left + margin));
+            double y2 = Math.min(canvas.getHeight(), Math.ceil((rect[3] + 1) * sectorSize - top + margin));
+            if (x1 >= x2 || y1 >= y2)
+                continue;
+
+            gc.save();
+            gc.beginPath();
+            gc.rect(x1, y1, x2 - x1, y2 - y1);
+            gc.clip();
+            if (rasterizer != null)
+                drawFrame(gc, currFloor, sectorSize, left, top);
+            else
+                drawTiles(gc, currFloor, sectorSize, left, top, x1, y1, x2, y2);
+            drawSelection(gc, sectorSize, left, top);
+            gc.restore();
+        }
+        damage.clear();
+    }
+
+    // copy the grid, sectors and doors covering canvas pixels (x1, y1) to (x2, y2) from the cached tiles, drawing any
+    // that are missing
+    private void drawTiles(GraphicsContext gc, Floor currFloor, double sectorSize, double left, double top,
+                           double x1, double y1, double x2, double y2) {
+        int tileSize = FloorTileCache.TILE_SIZE;
+        int firstTileZ = (int)Math.floor((left + x1) / tileSize);
+        int lastTileZ = (int)Math.floor((left + x2) / tileSize);
+        int firstTileX = (int)Math.floor((top + y1) / tileSize);
+        int lastTileX = (int)Math.floor((top + y2) / tileSize);
+        double pixelScale = getPixelScale();
+
+        for (int tileX = firstTileX; tileX <= lastTileX; tileX++) {
+            for (int tileZ = firstTileZ; tileZ <= lastTileZ; tileZ++) {
+                Image tile = tileCache.get(currFloor, sectorSize, pixelScale, tileZ, tileX,
+                        (tileGc, tileLeft, tileTop) ->
+                                drawStaticLayer(tileGc, currFloor, sectorSize, tileLeft, tileTop, tileSize, tileSize));
+                gc.drawImage(tile, tileZ * tileSize - left, tileX * tileSize - top, tileSize, tileSize);
+            }
+        }
+    }
+
+    // show the last frame drawn in the background, moved and scaled to where the camera is now, and ask for a new one
+    // if it's out of date. The floor is drawn again when the new frame is ready
+    private void drawFrame(GraphicsContext gc, Floor currFloor, double sectorSize, double left, double top) {
+        FloorRasterizer.Frame frame = rasterizer.getShown();
+        if (frame != null) {
+            FloorRasterizer.View shown = frame.view;
+            double scale = sectorSize / shown.sectorSize();
+            gc.drawImage(frame.image, shown.left() * scale - left, shown.top() * scale - top,
+                    frame.width * scale, frame.height * scale);
+        }
+
+        // frames reach past the canvas, so panning doesn't show their edges before the next frame is ready
+        int margin = FloorRasterizer.TILE_SIZE;
+        int width = (int)Math.ceil(canvas.getWidth()) + 2 * margin;
+        int height = (int)Math.ceil(canvas.getHeight()) + 2 * margin;
+        double frameLeft = left - margin, frameTop = top - margin;
+        int lineWidth = Math.max(1, (int)Math.round(calcLineWeight()));
+        if (!rasterStale
+                && rasterizer.isRequested(width, height, sectorSize, frameLeft, frameTop, lineWidth, gridLinesShown))
+            return;
+
+        // the outlines are taken here, since the map can only be read on this thread
+        int firstChunkZ = ((int)Math.floor(frameLeft / sectorSize) - 1) >> Floor.CHUNK_SHIFT;
+        int lastChunkZ = ((int)Math.floor((frameLeft + width) / sectorSize) + 1) >> Floor.CHUNK_SHIFT;
+        int firstChunkX = ((int)Math.floor(frameTop / sectorSize) - 1) >> Floor.CHUNK_SHIFT;
+        int lastChunkX = ((int)Math.floor((frameTop + height) / sectorSize) + 1) >> Floor.CHUNK_SHIFT;
+        SectorOutlines.Outline[] chunks = currFloor == null ? new SectorOutlines.Outline[0]
+                : getOutlines(currFloor, firstChunkZ, firstChunkX, lastChunkZ, lastChunkX);
+
+        rasterStale = false;
+        rasterizer.request(new FloorRasterizer.View(width, height, sectorSize, frameLeft, frameTop, lineWidth,
+                        gridLinesShown, firstChunkZ, firstChunkX, chunks.length == 0 ? 0 : lastChunkZ - firstChunkZ + 1,
+                        chunks),
+                f -> drawFloor());
+    }
+
+    // the outlines of the chunks from (firstChunkZ, firstChunkX) to (lastChunkZ, lastChunkX), a row at a time
+    private SectorOutlines.Outline[] getOutlines(Floor currFloor, int firstChunkZ, int firstChunkX,
+                                                 int lastChunkZ, int lastChunkX) {
+        SectorOutlines.Outline[] chunks =
+                new SectorOutlines.Outline[(lastChunkZ - firstChunkZ + 1) * (lastChunkX - firstChunkX + 1)];
+        for (int cx = firstChunkX, i = 0; cx <= lastChunkX; cx++) {
+            for (int cz = firstChunkZ; cz <= lastChunkZ; cz++)
+                chunks[i++] = outlines.get(currFloor, cz, cx);
+        }
+        return chunks;
+    }
+
+    // draw the selected sector or walls over the floor
+    private void drawSelection(GraphicsContext gc, double sectorSize, double left, double top) {
+        // lines will be thinner when more zoomed out
+        gc.setLineWidth(calcLineWeight());
+
+        // draw selected sector
+        if ((drawMode == DrawMode.SECTOR || drawMode == DrawMode.SURFACE) && currSector != null) {
+            double sectorZ = currSector.getZPos() * sectorSize - left;
+            double sectorX = currSector.getXPos() * sectorSize - top;
+
+            gc.setStroke(STROKE_SELECTEDSECTOR);
+            drawSector(sectorZ, sectorX, sectorSize);
+        }
+        // draw selected walls
+        else if (drawMode == DrawMode.TEXTURE) {
+            gc.setStroke(STROKE_SELECTEDWALL);
+
+            for (int i = 0; i < currWalls.sectorCount(); i++) {
+                Sector s = currWalls.sectorAt(i);
+                if (s == null)
+                    continue;
+
+                double sectorZ = s.getZPos() * sectorSize - left;
+                double sectorX = s.getXPos() * sectorSize - top;
+
+                drawSelectedWalls(sectorZ, sectorX, sectorSize, i);
+            }
+        }
+    }
+
+    // draw the background, grid lines, sectors and doors in a width x height area, with floor pixel (left, top) at
+    // the origin
+    private void drawStaticLayer(GraphicsContext gc, Floor currFloor, double sectorSize, double left, double top,
+                                 double width, double height) {
+        gc.setFill(FILL_BACKGROUND);
+        gc.fillRect(0, 0, width, height);
+
+        // lines will be thinner when more zoomed out
+        gc.setLineWidth(calcLineWeight());
+
+        // rows and columns of sectors that can be seen, plus one either side for lines drawn on the edges
+        int leftBound = (int)Math.floor(left / sectorSize) - 1;
+        int rightBound = (int)Math.floor((left + width) / sectorSize) + 1;
+        int upperBound = (int)Math.floor(top / sectorSize) - 1;
+        int lowerBound = (int)Math.floor((top + height) / sectorSize) + 1;
+
+        // draw grid lines, if needed, as one path
+        if (gridLinesShown) {
+            gc.setStroke(STROKE_GRIDLINE);
+            gc.beginPath();
+
+            // column lines
+            for (int z = leftBound; z <= rightBound; z++) {
+                gc.moveTo(z * sectorSize - left, 0);
+                gc.lineTo(z * sectorSize - left, height);
+            }
+
+            // row lines
+            for (int x = upperBound; x <= lowerBound; x++) {
+                gc.moveTo(0, x * sectorSize - top);
+                gc.lineTo(width, x * sectorSize - top);
+            }
+
+            gc.stroke();
+        }
+
+        // floor doesn't exist until a sector is placed on it
+        if (currFloor == null)
+            return;
+
+        // draw on-screen sectors a chunk at a time, doors first so walls are drawn over them
+        int firstChunkZ = leftBound >> Floor.CHUNK_SHIFT, lastChunkZ = rightBound >> Floor.CHUNK_SHIFT;
+        int firstChunkX = upperBound >> Floor.CHUNK_SHIFT, lastChunkX = lowerBound >> Floor.CHUNK_SHIFT;
+        SectorOutlines.Outline[] chunks = getOutlines(currFloor, firstChunkZ, firstChunkX, lastChunkZ, lastChunkX);
+
+        // when zoomed out, draw each chunk as one picture, so the cost depends on the size of the canvas and not how
+        // many sectors are in view
+        if (sectorSize < LOD_SECTOR_SIZE) {
+            double chunkSize = Floor.CHUNK_SIZE * sectorSize;
+            double imageSize = ChunkImages.IMAGE_SIZE * sectorSize / ChunkImages.PIXELS;
+            // centre the walls, which are one image pixel wide, on the lines between sectors
+            double offset = sectorSize / ChunkImages.PIXELS / 2;
+
+            for (int cx = firstChunkX, i = 0; cx <= lastChunkX; cx++) {
+                for (int cz = firstChunkZ; cz <= lastChunkZ; cz++, i++) {
+                    SectorOutlines.Outline o = chunks[i];
+                    if (o.runs().length == 0 && o.doors().length == 0)
+                        continue;
+                    gc.drawImage(chunkImages.get(currFloor, cz, cx, o),
+                            cz * chunkSize - left - offset, cx * chunkSize - top - offset, imageSize, imageSize);
+                }
+            }
+            return;
+        }
+
+        gc.setFill(FILL_DOOR);
+        for (SectorOutlines.Outline o : chunks) {
+            double[] doors = o.doors();
+            if (doors.length == 0)
+                continue;
+            gc.beginPath();
+            for (int i = 0; i < doors.length; i += 4)
+                gc.rect(doors[i] * sectorSize - left, doors[i + 1] * sectorSize - top,
+                        doors[i + 2] * sectorSize, doors[i + 3] * sectorSize);
+            gc.fill();
+        }
+
+        gc.setStroke(STROKE_SECTOR);
+        for (SectorOutlines.Outline o : chunks) {
+            int[] runs = o.runs();
+            if (runs.length == 0)
+                continue;
+            gc.beginPath();
+            for (int i = 0; i < runs.length; i += 4) {
+                gc.moveTo(runs[i] * sectorSize - left, runs[i + 1] * sectorSize - top);
+                gc.lineTo(runs[i + 2] * sectorSize - left, runs[i + 3] * sectorSize - top);
+            }
+            gc.stroke();
+        }
+    }
+
+    // draw sector at given spot, in canvas' current colour
+    private void drawSector(double sectorZ, double sectorX, double sectorSize) {
+        canvas.getGraphicsContext2D().strokeRect(sectorZ, sectorX, sectorSize, sectorSize);
+    }
+
+    // draw the walls of the i-th sector in the wall selection
+    private void drawSelectedWalls(double sectorZ, double sectorX, double sectorSize, int i) {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+
+        // draw top line
+        if (currWalls.hasWall(i, Direction.NORTH)) {
+            gc.strokeLine(sectorZ, sectorX, sectorZ + sectorSize, sectorX);
+            gc.strokeLine(sectorZ + sectorSize/2d, sectorX, sectorZ + sectorSize/2d, sectorX + sectorSize/4d);
+        }
+        // draw bottom line
+        if (currWalls.hasWall(i, Direction.SOUTH)) {
+            gc.strokeLine(sectorZ, sectorX + sectorSize, sectorZ + sectorSize, sectorX + sectorSize);
+            gc.strokeLine(sectorZ + sectorSize/2d, sectorX + sectorSize, sectorZ + sectorSize/2d, sectorX + sectorSize*3d/4d);
+        }
+        // draw right line
+        if (currWalls.hasWall(i, Direction.EAST)) {
+            gc.strokeLine(sectorZ + sectorSize, sectorX, sectorZ + sectorSize, sectorX + sectorSize);
+            gc.strokeLine(sectorZ + sectorSize, sectorX + sectorSize/2d, sectorZ + sectorSize*3d/4d, sectorX + sectorSize/2d);
+        }
+        // draw left line
+        if (currWalls.hasWall(i, Direction.WEST)) {
+            gc.strokeLine(sectorZ, sectorX, sectorZ, sectorX + sectorSize);
+            gc.strokeLine(sectorZ, sectorX + sectorSize/2d, sectorZ + sectorSize/4d, sectorX + sectorSize/2d);
+        }
+    }
+
+    public Sector makeSector()
+    {
+        if (currSector != null) putInFloor(currSector);
+        return currSector;
+    }
+
+    private boolean sectorExists(double z, double x){
+        return gameMap.sectorExists((int)Math.floor(z), (int)Math.floor(x), floorIndex);
+    }
+
+    private Sector getSector(double z, double x) {
+        return gameMap.getSector((int)Math.floor(z), (int)Math.floor(x), floorIndex);
+    }
+
+    private double calcSectorSize() {
+        return (MAX_SECTOR_SIZE - MIN_SECTOR_SIZE) * zoom * zoom + MIN_SECTOR_SIZE;
+    }
+
+    private double calcLineWeight() {
+        return (MAX_LINE_WEIGHT - MIN_LINE_WEIGHT) * zoom + MIN_LINE_WEIGHT;
+    }
+
+    // screen pixels per canvas pixel, so the cached tiles are as sharp as drawing on the canvas directly
+    private double getPixelScale() {
+        if (canvas.getScene() == null || canvas.getScene().getWindow() == null)
+            return 1;
+        return canvas.getScene().getWindow().getOutputScaleX();
+    }
+
+    private void putInFloor(Sector s) {
+        if (sectorExists(s.getZPos(), s.getXPos())) {
+            System.err.println("ERROR: Sector already in map");
+        }
+        else {
+            gameMap.addSector(s);
+        }
+    }
+}
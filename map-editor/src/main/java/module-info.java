@@ -0,0 +1,9 @@
+module aidan_garvey.mapeditor.ui {
+    requires aidan_garvey.mapeditor;
+    requires javafx.controls;
+    requires javafx.fxml;
+
+
+    opens aidan_garvey.mapeditor.ui to javafx.fxml;
+    exports aidan_garvey.mapeditor.ui;
+}
@@ -1,8 +0,0 @@
-module aidan_garvey.mapeditor {
-    requires javafx.controls;
-    requires javafx.fxml;
-
-
-    opens aidan_garvey.mapeditor to javafx.fxml;
-    exports aidan_garvey.mapeditor;
-}
\ No newline at end of file